@@ -25,11 +25,103 @@ create table user
     updateTime   datetime default CURRENT_TIMESTAMP null on update CURRENT_TIMESTAMP,
     isDelete     tinyint  default 0                 not null comment '是否删除',
     userRole     int      default 0                 not null comment '用户角色 0 - 普通用户 1 - 管理员',
-    planetCode   varchar(512)                       null comment '星球编号'
+    planetCode   varchar(512)                       null comment '星球编号',
+    activeFlag   tinyint as (if(isDelete = 0, 1, null)) comment '未删除时为 1，已删除时为 null（唯一索引只约束未删除的用户）',
+    unique index uk_userAccount (userAccount, activeFlag),
+    unique index uk_planetCode (planetCode, activeFlag)
 )
     comment '用户';
 
 # 导入示例用户
 INSERT INTO yupi.user (username, userAccount, avatarUrl, gender, userPassword, phone, email, userStatus, createTime, updateTime, isDelete, userRole, planetCode) VALUES ('鱼皮', 'yupi', 'https://himg.bdimg.com/sys/portraitn/item/public.1.e137c1ac.yS1WqOXfSWEasOYJ2-0pvQ', null, 'b0dd3697a192885d7c055db46155b26a', null, null, 0, '2023-08-06 14:14:22', '2023-08-06 14:39:37', 0, 1, '1');
 
+# 队伍表
+create table team
+(
+    id          bigint auto_increment comment 'id'
+        primary key,
+    name        varchar(256)                       not null comment '队伍名称',
+    description varchar(1024)                      null comment '描述',
+    maxNum      int      default 1                 not null comment '最大人数',
+    memberCount int      default 0                 not null comment '已加入人数',
+    expireTime  datetime                           null comment '过期时间',
+    userId      bigint                             null comment '队长 id',
+    status      int      default 0                 not null comment '0 - 公开，1 - 私有，2 - 加密',
+    password    varchar(512)                       null comment '密码',
+    createTime  datetime default CURRENT_TIMESTAMP null comment '创建时间',
+    updateTime  datetime default CURRENT_TIMESTAMP null on update CURRENT_TIMESTAMP,
+    isDelete    tinyint  default 0                 not null comment '是否删除',
+    index idx_status_isDelete_expireTime (status, isDelete, expireTime),
+    index idx_userId (userId),
+    index idx_expireTime (expireTime)
+)
+    comment '队伍';
+
+# 用户队伍关系表
+create table user_team
+(
+    id         bigint auto_increment comment 'id'
+        primary key,
+    userId     bigint                             null comment '用户 id',
+    teamId     bigint                             null comment '队伍 id',
+    joinTime   datetime                           null comment '加入时间',
+    createTime datetime default CURRENT_TIMESTAMP null comment '创建时间',
+    updateTime datetime default CURRENT_TIMESTAMP null on update CURRENT_TIMESTAMP,
+    isDelete   tinyint  default 0                 not null comment '是否删除',
+    index idx_teamId (teamId),
+    unique index uk_userId_teamId (userId, teamId)
+)
+    comment '用户队伍关系';
+
+# 队伍归档表（已过期、已删除的队伍定时分批迁移到这里）
+create table team_archive
+(
+    id          bigint                             not null comment 'id'
+        primary key,
+    name        varchar(256)                       not null comment '队伍名称',
+    description varchar(1024)                      null comment '描述',
+    maxNum      int      default 1                 not null comment '最大人数',
+    memberCount int      default 0                 not null comment '已加入人数',
+    expireTime  datetime                           null comment '过期时间',
+    userId      bigint                             null comment '队长 id',
+    status      int      default 0                 not null comment '0 - 公开，1 - 私有，2 - 加密',
+    password    varchar(512)                       null comment '密码',
+    createTime  datetime                           null comment '创建时间',
+    updateTime  datetime                           null comment '更新时间',
+    isDelete    tinyint  default 0                 not null comment '是否删除',
+    archiveTime datetime default CURRENT_TIMESTAMP not null comment '归档时间'
+)
+    comment '队伍归档';
+
+# 用户队伍关系归档表
+create table user_team_archive
+(
+    id          bigint                             not null comment 'id'
+        primary key,
+    userId      bigint                             null comment '用户 id',
+    teamId      bigint                             null comment '队伍 id',
+    joinTime    datetime                           null comment '加入时间',
+    createTime  datetime                           null comment '创建时间',
+    updateTime  datetime                           null comment '更新时间',
+    isDelete    tinyint  default 0                 not null comment '是否删除',
+    archiveTime datetime default CURRENT_TIMESTAMP not null comment '归档时间',
+    index idx_teamId (teamId)
+)
+    comment '用户队伍关系归档';
+
+# 已有库升级：队伍表新增已加入人数字段并按关系表初始化
+# alter table team add column memberCount int default 0 not null comment '已加入人数' after maxNum;
+# update team t set memberCount = (select count(*) from user_team ut where ut.teamId = t.id and ut.isDelete = 0);
+# 已有库升级：列表查询、归档扫描使用的索引
+# alter table team add index idx_status_isDelete_expireTime (status, isDelete, expireTime), add index idx_userId (userId), add index idx_expireTime (expireTime);
+# alter table user_team add index idx_teamId (teamId), add index idx_userId (userId);
+# 已有库升级：同一用户、队伍只保留一条关系（优先保留未删除的），再加唯一索引
+# delete ut1 from user_team ut1 join user_team ut2 on ut1.userId = ut2.userId and ut1.teamId = ut2.teamId and (ut1.isDelete > ut2.isDelete or (ut1.isDelete = ut2.isDelete and ut1.id < ut2.id));
+# alter table user_team add unique index uk_userId_teamId (userId, teamId), drop index idx_userId;
+# 已有库升级：未删除用户的账号、星球编号唯一（已删除用户的账号、编号可以重新注册），先确认没有重复数据
+# select userAccount, count(*) from user where isDelete = 0 group by userAccount having count(*) > 1;
+# select planetCode, count(*) from user where isDelete = 0 group by planetCode having count(*) > 1;
+# alter table user add column activeFlag tinyint as (if(isDelete = 0, 1, null)) comment '未删除时为 1，已删除时为 null（唯一索引只约束未删除的用户）';
+# alter table user add unique index uk_userAccount (userAccount, activeFlag), add unique index uk_planetCode (planetCode, activeFlag);
+
 # [加入编程导航](https://t.zsxq.com/0emozsIJh) 入门捷径+交流答疑+项目实战+求职指导，帮你自学编程不走弯路
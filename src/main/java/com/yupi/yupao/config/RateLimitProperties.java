@@ -0,0 +1,46 @@
+package com.yupi.yupao.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 接口限流配置（yupao.rate-limit）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "yupao.rate-limit")
+@Data
+public class RateLimitProperties {
+
+    /**
+     * 是否开启限流
+     */
+    private boolean enabled = true;
+
+    /**
+     * 限流规则，key 为规则名称（同时作为 Redis key 的一部分）
+     */
+    private Map<String, Rule> rules = new LinkedHashMap<>();
+
+    @Data
+    public static class Rule {
+
+        /**
+         * 接口路径（不含 context-path），如 /user/match
+         */
+        private String path;
+
+        /**
+         * 每个周期允许的请求数
+         */
+        private long permits;
+
+        /**
+         * 周期（秒）
+         */
+        private long periodSeconds = 60;
+    }
+}
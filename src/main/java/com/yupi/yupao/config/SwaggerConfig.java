@@ -1,8 +1,12 @@
 package com.yupi.yupao.config;
 
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -10,8 +14,13 @@ import springfox.documentation.service.ApiInfo;
 import springfox.documentation.service.Contact;
 import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
+import springfox.documentation.spring.web.plugins.WebMvcRequestHandlerProvider;
 import springfox.documentation.swagger2.annotations.EnableSwagger2WebMvc;
 
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Configuration
 @EnableSwagger2WebMvc
 @Profile({"dev", "test"})
@@ -28,6 +37,34 @@ public class SwaggerConfig {
                 .build();
     }
 
+    /**
+     * 引入 actuator 后，actuator 端点的映射在 Spring Boot 2.6 下使用 PathPatternParser，没有 patternsCondition，
+     * springfox 启动时读取它会空指针导致应用无法启动；这里只把基于 AntPathMatcher 的映射交给 springfox
+     */
+    @Bean
+    public static BeanPostProcessor springfoxHandlerProviderBeanPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof WebMvcRequestHandlerProvider) {
+                    Field field = ReflectionUtils.findField(bean.getClass(), "handlerMappings");
+                    if (field != null) {
+                        ReflectionUtils.makeAccessible(field);
+                        List<RequestMappingInfoHandlerMapping> handlerMappings =
+                                (List<RequestMappingInfoHandlerMapping>) ReflectionUtils.getField(field, bean);
+                        List<RequestMappingInfoHandlerMapping> antMappings = handlerMappings.stream()
+                                .filter(mapping -> mapping.getPatternParser() == null)
+                                .collect(Collectors.toList());
+                        handlerMappings.clear();
+                        handlerMappings.addAll(antMappings);
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
     // [加入编程导航](https://t.zsxq.com/0emozsIJh) 深耕编程提升【两年半】、国内净值【最高】的编程社群、用心服务【20000+】求学者、帮你自学编程【不走弯路】
 
     /**
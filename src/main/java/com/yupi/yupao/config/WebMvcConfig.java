@@ -1,10 +1,23 @@
 package com.yupi.yupao.config;
 
+import com.yupi.yupao.interceptor.RateLimitInterceptor;
+import com.yupi.yupao.manager.AuthTokenManager;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.Resource;
+import java.util.stream.Collectors;
+
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Resource
+    private RateLimitInterceptor rateLimitInterceptor;
+    @Resource
+    private RateLimitProperties rateLimitProperties;
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         //设置允许跨域的路径。
@@ -14,7 +27,20 @@ public class WebMvcConfig implements WebMvcConfigurer {
                 .allowCredentials(true)
                 //设置允许的方法
                 .allowedMethods("*")
+                //令牌模式登录时通过响应头返回令牌
+                .exposedHeaders(AuthTokenManager.HEADER_NAME)
                 //跨域允许时间
                 .maxAge(3600);
     }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        //只拦截配置了限流规则的接口
+        if (rateLimitProperties.getRules().isEmpty()) {
+            return;
+        }
+        registry.addInterceptor(rateLimitInterceptor)
+                .addPathPatterns(rateLimitProperties.getRules().values().stream()
+                        .map(RateLimitProperties.Rule::getPath).collect(Collectors.toList()));
+    }
 }
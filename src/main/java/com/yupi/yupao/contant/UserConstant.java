@@ -13,6 +13,11 @@ public interface UserConstant {
      */
     String USER_LOGIN_STATE = "userLoginState";
 
+    /**
+     * 精简 Session 模式下的用户登录态键（只保存用户 id）
+     */
+    String USER_LOGIN_ID = "userLoginId";
+
     //  ------- 权限 --------
 
     /**
@@ -0,0 +1,105 @@
+package com.yupi.yupao.controller;
+
+import com.yupi.yupao.common.BaseResponse;
+import com.yupi.yupao.common.ErrorCode;
+import com.yupi.yupao.common.ResultUtils;
+import com.yupi.yupao.exception.BusinessException;
+import com.yupi.yupao.manager.BatchTaskManager;
+import com.yupi.yupao.model.request.TeamBatchDeleteRequest;
+import com.yupi.yupao.model.request.UserBatchDeleteRequest;
+import com.yupi.yupao.model.vo.BatchTaskVO;
+import com.yupi.yupao.model.vo.UserImportVO;
+import com.yupi.yupao.service.TeamService;
+import com.yupi.yupao.service.UserService;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * 管理员批量操作
+ * 批量删除提交后立即返回任务 id，按块异步处理，通过 /admin/task/get 查询进度；批量导入同步返回结果
+ */
+@RestController
+@RequestMapping("/admin")
+@CrossOrigin(origins = {"http://localhost:3000"})
+public class AdminController {
+
+    @Resource
+    private UserService userService;
+    @Resource
+    private TeamService teamService;
+    @Resource
+    private BatchTaskManager batchTaskManager;
+
+    /**
+     * 批量删除用户（级联解除队伍关系、转移队长、解散空队伍）
+     * @param userBatchDeleteRequest
+     * @param request
+     * @return 任务 id
+     */
+    @PostMapping("/user/delete/batch")
+    public BaseResponse<String> batchDeleteUsers(@RequestBody UserBatchDeleteRequest userBatchDeleteRequest, HttpServletRequest request) {
+        checkAdmin(request);
+        long total = userService.countBatchDelete(userBatchDeleteRequest);
+        String taskId = batchTaskManager.submit("user:delete", total,
+                lastId -> userService.listBatchDeleteIds(userBatchDeleteRequest, lastId, BatchTaskManager.CHUNK_SIZE),
+                teamService::deleteUsersChunk);
+        return ResultUtils.success(taskId);
+    }
+
+    /**
+     * 批量删除队伍（连同队伍关系）
+     * @param teamBatchDeleteRequest
+     * @param request
+     * @return 任务 id
+     */
+    @PostMapping("/team/delete/batch")
+    public BaseResponse<String> batchDeleteTeams(@RequestBody TeamBatchDeleteRequest teamBatchDeleteRequest, HttpServletRequest request) {
+        checkAdmin(request);
+        long total = teamService.countBatchDelete(teamBatchDeleteRequest);
+        String taskId = batchTaskManager.submit("team:delete", total,
+                lastId -> teamService.listBatchDeleteIds(teamBatchDeleteRequest, lastId, BatchTaskManager.CHUNK_SIZE),
+                teamService::deleteTeamsChunk);
+        return ResultUtils.success(taskId);
+    }
+
+    /**
+     * 批量导入用户（同步处理，边读取请求体边导入）
+     * 请求体为 NDJSON（每行一个对象）或带表头的 CSV，字段：userAccount、userPassword、planetCode、username（可选）
+     * @param format ndjson 或 csv，不传时按 Content-Type 判断
+     * @param request
+     * @return 导入结果和吞吐量
+     */
+    @PostMapping("/user/import")
+    public BaseResponse<UserImportVO> importUsers(@RequestParam(required = false) String format, HttpServletRequest request) throws IOException {
+        checkAdmin(request);
+        boolean csv = format != null ? "csv".equalsIgnoreCase(format)
+                : request.getContentType() != null && request.getContentType().toLowerCase().contains("csv");
+        UserImportVO userImportVO = userService.importUsers(request.getInputStream(), csv);
+        return ResultUtils.success(userImportVO);
+    }
+
+    /**
+     * 查询批量任务进度
+     * @param taskId
+     * @param request
+     * @return
+     */
+    @GetMapping("/task/get")
+    public BaseResponse<BatchTaskVO> getTask(String taskId, HttpServletRequest request) {
+        checkAdmin(request);
+        BatchTaskVO batchTaskVO = batchTaskManager.get(taskId);
+        if (batchTaskVO == null) {
+            throw new BusinessException(ErrorCode.NULL_ERROR, "任务不存在或已过期");
+        }
+        return ResultUtils.success(batchTaskVO);
+    }
+
+    private void checkAdmin(HttpServletRequest request) {
+        if (!userService.isAdmin(request)) {
+            throw new BusinessException(ErrorCode.NO_AUTH);
+        }
+    }
+}
@@ -2,30 +2,37 @@ package com.yupi.yupao.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yupi.yupao.common.BaseResponse;
 import com.yupi.yupao.common.ErrorCode;
 import com.yupi.yupao.common.ResultUtils;
 import com.yupi.yupao.exception.BusinessException;
+import com.yupi.yupao.manager.BloomFilterManager;
+import com.yupi.yupao.manager.IdempotencyManager;
+import com.yupi.yupao.manager.TeamListCacheManager;
+import com.yupi.yupao.manager.UserJoinTeamManager;
 import com.yupi.yupao.model.domain.Team;
 import com.yupi.yupao.model.domain.User;
-import com.yupi.yupao.model.domain.UserTeam;
 import com.yupi.yupao.model.dto.TeamQuery;
 import com.yupi.yupao.model.request.*;
 import com.yupi.yupao.model.vo.TeamUserVO;
 import com.yupi.yupao.service.TeamService;
 import com.yupi.yupao.service.UserService;
 import com.yupi.yupao.service.UserTeamService;
+import com.yupi.yupao.utlis.FieldsetUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 队伍的增删查改
@@ -34,6 +41,12 @@ import java.util.stream.Collectors;
 @RequestMapping("/team")
 @CrossOrigin(origins = "http://localhost:3000")
 public class TeamController {
+
+    /**
+     * 加入队伍等待结果的最长时间（毫秒）
+     */
+    private static final long JOIN_TIMEOUT_MILLIS = 10000;
+
     @Resource
     private TeamService teamService;
     @Resource
@@ -42,22 +55,36 @@ public class TeamController {
     private UserTeamService userTeamService;
     @Resource
     private RedisTemplate redisTemplate;
+    @Resource
+    private BloomFilterManager bloomFilterManager;
+    @Resource
+    private UserJoinTeamManager userJoinTeamManager;
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private TeamListCacheManager teamListCacheManager;
+    @Resource
+    private IdempotencyManager idempotencyManager;
 
     /**
      * 添加队伍
      * @param teamAddRequest
+     * @param idempotencyKey 重试时携带相同的值，直接返回第一次的结果
      * @param request
      * @return
      */
     @PostMapping("/add")
-    public BaseResponse<Long> addTeam(@RequestBody TeamAddRequest teamAddRequest, HttpServletRequest request){
+    public BaseResponse<Long> addTeam(@RequestBody TeamAddRequest teamAddRequest,
+                                      @RequestHeader(value = IdempotencyManager.HEADER_NAME, required = false) String idempotencyKey,
+                                      HttpServletRequest request){
         if (teamAddRequest==null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         User logininUser = userService.getLogininUser(request);
         Team team = new Team();
         BeanUtils.copyProperties(teamAddRequest,team);
-        Long  teamId=teamService.addTeam(team,logininUser);
+        Long  teamId=idempotencyManager.execute("team:add", logininUser.getId(), idempotencyKey, teamAddRequest, Long.class,
+                () -> teamService.addTeam(team,logininUser));
         return ResultUtils.success(teamId);
     }
     /**
@@ -80,12 +107,22 @@ public class TeamController {
     /**
      * 查询
      * @param id
+     * @param webRequest If-None-Match 与 ETag 相同时直接返回 304
      * @return
      */
     @GetMapping("/get")
-    public BaseResponse<Team> getTeamById( long id ){
+    public BaseResponse<Team> getTeamById( long id, WebRequest webRequest ){
        if (id<=0){
            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+       }
+       //布隆过滤器判定不存在的直接返回，不查数据库
+       if (!bloomFilterManager.mightContainTeam(id)){
+           throw new BusinessException(ErrorCode.NULL_ERROR);
+       }
+       //队伍没有变化时返回 304，不查数据库
+       String eTag = teamListCacheManager.buildTeamETag(id);
+       if (eTag != null && webRequest.checkNotModified(eTag)){
+           return null;
        }
         Team team = teamService.getById(id);
        if (team==null){
@@ -113,38 +150,44 @@ public class TeamController {
         return ResultUtils.success(true);
     }
 
+    /**
+     * 查询队伍列表
+     * @param teamQuery fields 不为空时只返回请求的字段
+     * @param request
+     * @param webRequest If-None-Match 与 ETag 相同时直接返回 304
+     * @return
+     */
     @GetMapping("/list")
-    public BaseResponse<List<TeamUserVO>> listTeams(TeamQuery teamQuery,HttpServletRequest request){
+    public BaseResponse<List<?>> listTeams(TeamQuery teamQuery,HttpServletRequest request,WebRequest webRequest){
         if (teamQuery==null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
-        //查询队伍列表
+        Set<String> fieldSet = FieldsetUtils.parseFields(teamQuery.getFields(), FieldsetUtils.TEAM_FIELD_COLUMN_MAP);
         boolean isAdmin = userService.isAdmin(request);
+        User logininUser = userService.getLogininUserOrNull(request);
+        //列表版本号没变时返回 304，不查缓存和数据库
+        String eTag = teamListCacheManager.buildETag(teamListCacheManager.buildQueryKey(teamQuery, isAdmin),
+                logininUser == null ? null : logininUser.getId());
+        if (eTag != null && webRequest.checkNotModified(eTag)){
+            return null;
+        }
+        //查询队伍列表
         List<TeamUserVO> teamList =teamService.listTeams(teamQuery,isAdmin);
-        List<Long> teamIdList = teamList.stream().map(TeamUserVO::getId).collect(Collectors.toList());
-        //判断当前用户是否已经加入队伍
-        QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
-        try {
-            User logininUser = userService.getLogininUser(request);
-            userTeamQueryWrapper.eq("userId", logininUser.getId());
-            userTeamQueryWrapper.in("teamId", teamList);
-            //得到当前用户所加入的队伍
-            List<UserTeam> userTeamList = userTeamService.list(userTeamQueryWrapper);
+        if (teamList.isEmpty()){
+            return ResultUtils.success(teamList);
+        }
+        //判断当前用户是否已经加入队伍（未登录则全部为未加入）
+        if (logininUser != null) {
             //已加入队伍的id
-            Set<Long> hasJoinTeamIdSet = userTeamList.stream().map(UserTeam::getTeamId).collect(Collectors.toSet());
+            Set<Long> hasJoinTeamIdSet = userJoinTeamManager.getJoinTeamIds(logininUser.getId());
             teamList.forEach(team -> {
                 boolean hasJoin = hasJoinTeamIdSet.contains(team.getId());
                 team.setHasJoin(hasJoin);
             });
-        }catch (Exception e){}
-        //查询已加入的队伍人数
-        QueryWrapper<UserTeam> userTeamJoinQueryWrapper = new QueryWrapper<>();
-        userTeamJoinQueryWrapper.in("teamId",teamIdList);
-        List<UserTeam> userTeamList = userTeamService.list(userTeamJoinQueryWrapper);
-        //队伍id -> 加入这个队伍的用户列表
-        Map<Long, List<UserTeam>> teamIdUserList = userTeamList.stream().collect(Collectors.groupingBy(UserTeam::getUserId));
-        teamList.forEach(team -> team.setHasJoinNum(teamIdUserList.getOrDefault(team.getId(),new ArrayList<>()).size()));
-
+        }
+        if (!fieldSet.isEmpty()){
+            return ResultUtils.success(FieldsetUtils.project(objectMapper, teamList, fieldSet));
+        }
         return ResultUtils.success(teamList);
 
     }
@@ -164,20 +207,36 @@ public class TeamController {
     /**
      * 加入队伍
      * @param teamJoinRequest
+     * @param idempotencyKey 重试时携带相同的值，直接返回第一次的结果
      * @param request
      * @return
      */
     @PostMapping("/join")
-    public BaseResponse<Boolean> joinTeam(@RequestBody TeamJoinRequest teamJoinRequest,HttpServletRequest request){
+    public DeferredResult<BaseResponse<Boolean>> joinTeam(@RequestBody TeamJoinRequest teamJoinRequest,
+                                                          @RequestHeader(value = IdempotencyManager.HEADER_NAME, required = false) String idempotencyKey,
+                                                          HttpServletRequest request){
         if (teamJoinRequest==null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         User loginUser = userService.getLogininUser(request);
-        boolean result=teamService.joinTeam(teamJoinRequest,loginUser);
-        if (!result){
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR,"加入失败");
-        }
-        return ResultUtils.success(true);
+        //排队加入时不占用请求线程，结果出来后再响应
+        CompletableFuture<Boolean> future = idempotencyManager.executeAsync("team:join", loginUser.getId(), idempotencyKey,
+                teamJoinRequest, JOIN_TIMEOUT_MILLIS, Boolean.class, () -> teamService.joinTeamAsync(teamJoinRequest, loginUser));
+        DeferredResult<BaseResponse<Boolean>> deferredResult = new DeferredResult<>(JOIN_TIMEOUT_MILLIS);
+        deferredResult.onTimeout(() -> {
+            future.cancel(false);
+            deferredResult.setErrorResult(new BusinessException(ErrorCode.SYSTEM_ERROR,"排队超时，请刷新后查看是否已加入"));
+        });
+        future.whenComplete((result, e) -> {
+            if (e != null){
+                deferredResult.setErrorResult(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }else if (!Boolean.TRUE.equals(result)){
+                deferredResult.setErrorResult(new BusinessException(ErrorCode.SYSTEM_ERROR,"加入失败"));
+            }else {
+                deferredResult.setResult(ResultUtils.success(true));
+            }
+        });
+        return deferredResult;
     }
 
     /**
@@ -212,13 +271,12 @@ public class TeamController {
         }
         //获取当前用户id
         User logininUser = userService.getLogininUser(request);
-        QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
-        userTeamQueryWrapper.eq("userId",logininUser.getId());
-        List<UserTeam> userTeamList = userTeamService.list(userTeamQueryWrapper);
-        //取出的队伍不重复
-        Map<Long, List<UserTeam>> listMap = userTeamList.stream().collect(Collectors.groupingBy(UserTeam::getTeamId));
-        ArrayList<Long> idList = new ArrayList<>(listMap.keySet());
-        teamQuery.setIdList(idList);
+        //已加入的队伍 id（不重复）
+        Set<Long> joinTeamIdSet = userJoinTeamManager.getJoinTeamIds(logininUser.getId());
+        if (joinTeamIdSet.isEmpty()){
+            return ResultUtils.success(new ArrayList<>());
+        }
+        teamQuery.setIdList(new ArrayList<>(joinTeamIdSet));
         List<TeamUserVO> teamList = teamService.listTeams(teamQuery, true);
         return ResultUtils.success(teamList);
     }
@@ -227,16 +285,20 @@ public class TeamController {
     /**
      * 用户退出
      * @param teamQuitRequest
+     * @param idempotencyKey 重试时携带相同的值，直接返回第一次的结果
      * @param request
      * @return
      */
     @PostMapping("/quit")
-    public BaseResponse<Boolean> quitTeam(@RequestBody TeamQuitRequest teamQuitRequest, HttpServletRequest request){
+    public BaseResponse<Boolean> quitTeam(@RequestBody TeamQuitRequest teamQuitRequest,
+                                          @RequestHeader(value = IdempotencyManager.HEADER_NAME, required = false) String idempotencyKey,
+                                          HttpServletRequest request){
         if (teamQuitRequest==null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         User logininUser = userService.getLogininUser(request);
-        boolean result=teamService.quitTeam(teamQuitRequest,logininUser);
+        boolean result=idempotencyManager.execute("team:quit", logininUser.getId(), idempotencyKey, teamQuitRequest, Boolean.class,
+                () -> teamService.quitTeam(teamQuitRequest,logininUser));
         if (!result){
             throw new BusinessException(ErrorCode.PARAMS_ERROR,"退出失败");
         }
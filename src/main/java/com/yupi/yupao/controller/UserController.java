@@ -2,29 +2,36 @@ package com.yupi.yupao.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yupi.yupao.common.BaseResponse;
 import com.yupi.yupao.common.ErrorCode;
 import com.yupi.yupao.common.ResultUtils;
 import com.yupi.yupao.exception.BusinessException;
+import com.yupi.yupao.manager.AuthTokenManager;
+import com.yupi.yupao.manager.BloomFilterManager;
+import com.yupi.yupao.manager.UserNearCache;
+import com.yupi.yupao.manager.UserVersionManager;
 import com.yupi.yupao.model.domain.User;
 import com.yupi.yupao.model.request.UserLoginRequest;
 import com.yupi.yupao.model.request.UserRegisterRequest;
 import com.yupi.yupao.service.UserService;
+import com.yupi.yupao.utlis.FieldsetUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import static com.yupi.yupao.contant.UserConstant.USER_LOGIN_STATE;
-
 /**
  * 用户接口
  *
@@ -40,6 +47,16 @@ public class UserController {
     private UserService userService;
     @Resource
     private RedisTemplate redisTemplate;
+    @Resource
+    private BloomFilterManager bloomFilterManager;
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private UserVersionManager userVersionManager;
+    @Resource
+    private UserNearCache userNearCache;
+    @Resource
+    private AuthTokenManager authTokenManager;
 
     /**
      * 用户注册
@@ -72,7 +89,8 @@ public class UserController {
      * @return
      */
     @PostMapping("/login")
-    public BaseResponse<User> userLogin(@RequestBody UserLoginRequest userLoginRequest, HttpServletRequest request) {
+    public BaseResponse<User> userLogin(@RequestBody UserLoginRequest userLoginRequest, HttpServletRequest request,
+                                        HttpServletResponse response) {
         if (userLoginRequest == null) {
             return ResultUtils.error(ErrorCode.PARAMS_ERROR);
         }
@@ -82,6 +100,10 @@ public class UserController {
             return ResultUtils.error(ErrorCode.PARAMS_ERROR);
         }
         User user = userService.userLogin(userAccount, userPassword, request);
+        //令牌模式通过响应头返回令牌，之后的请求放在 Authorization: Bearer {token} 中
+        if (user != null && authTokenManager.isTokenMode()) {
+            response.setHeader(AuthTokenManager.HEADER_NAME, AuthTokenManager.TOKEN_PREFIX + authTokenManager.issue(user));
+        }
         return ResultUtils.success(user);
     }
 
@@ -104,16 +126,28 @@ public class UserController {
      * 获取当前用户
      *
      * @param request
+     * @param webRequest If-None-Match 与 ETag 相同时直接返回 304
      * @return
      */
     @GetMapping("/current")
-    public BaseResponse<User> getCurrentUser(HttpServletRequest request) {
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        User currentUser = (User) userObj;
+    public BaseResponse<User> getCurrentUser(HttpServletRequest request, WebRequest webRequest) {
+        User currentUser = userService.getLogininUserOrNull(request);
         if (currentUser == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN);
         }
         long userId = currentUser.getId();
+        //布隆过滤器判定不存在的直接返回，不查数据库
+        if (!bloomFilterManager.mightContainUser(userId)) {
+            throw new BusinessException(ErrorCode.NULL_ERROR);
+        }
+        //用户信息版本号没变时返回 304，不查数据库
+        Long version = userVersionManager.getVersion(userId);
+        if (version != null && version == UserVersionManager.NOT_FOUND) {
+            throw new BusinessException(ErrorCode.NULL_ERROR);
+        }
+        if (version != null && webRequest.checkNotModified("user-" + userId + "-" + version)) {
+            return null;
+        }
         // TODO 校验用户是否合法
         User user = userService.getById(userId);
         User safetyUser = userService.getSafetyUser(user);
@@ -121,17 +155,33 @@ public class UserController {
     }
 
 
+    /**
+     * 搜索用户
+     *
+     * @param username
+     * @param fields 需要返回的字段，逗号分隔，为空返回全部字段
+     * @param request
+     * @return
+     */
     @GetMapping("/search")
-    public BaseResponse<List<User>> searchUsers(String username, HttpServletRequest request) {
+    public BaseResponse<List<?>> searchUsers(String username, String fields, HttpServletRequest request) {
         if (!userService.isAdmin(request)) {
             throw new BusinessException(ErrorCode.NO_AUTH, "缺少管理员权限");
         }
+        Set<String> fieldSet = FieldsetUtils.parseFields(fields, FieldsetUtils.USER_FIELD_COLUMN_MAP);
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        if (!fieldSet.isEmpty()) {
+            //只查请求的列
+            queryWrapper.select(FieldsetUtils.toColumns(fieldSet, FieldsetUtils.USER_FIELD_COLUMN_MAP, "id"));
+        }
         if (StringUtils.isNotBlank(username)) {
             queryWrapper.like("username", username);
         }
         List<User> userList = userService.list(queryWrapper);
         List<User> list = userList.stream().map(user -> userService.getSafetyUser(user)).collect(Collectors.toList());
+        if (!fieldSet.isEmpty()) {
+            return ResultUtils.success(FieldsetUtils.project(objectMapper, list, fieldSet));
+        }
         return ResultUtils.success(list);
     }
 
@@ -195,6 +245,9 @@ public class UserController {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         boolean b = userService.removeById(id);
+        //已登录的会话在下一次校验版本号时失效
+        userVersionManager.bumpVersion(id);
+        userNearCache.evict(id);
         return ResultUtils.success(b);
     }
 
@@ -0,0 +1,43 @@
+package com.yupi.yupao.enums;
+
+/**
+ * 加入队伍方式枚举
+ *
+ */
+public enum TeamJoinModeEnum {
+
+    LOCK("lock", "用户 + 队伍联锁"),
+    LUA("lua", "Redis 脚本原子校验"),
+    CAS("cas", "数据库条件更新"),
+    QUEUE("queue", "按队伍排队批量加入");
+
+    private String value;
+
+    private String text;
+
+    public static TeamJoinModeEnum getEnumByValue(String value) {
+        if (value == null) {
+            return null;
+        }
+        TeamJoinModeEnum[] values = TeamJoinModeEnum.values();
+        for (TeamJoinModeEnum teamJoinModeEnum : values) {
+            if (teamJoinModeEnum.getValue().equalsIgnoreCase(value.trim())) {
+                return teamJoinModeEnum;
+            }
+        }
+        return null;
+    }
+
+    TeamJoinModeEnum(String value, String text) {
+        this.value = value;
+        this.text = text;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,79 @@
+package com.yupi.yupao.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yupi.yupao.common.ErrorCode;
+import com.yupi.yupao.common.ResultUtils;
+import com.yupi.yupao.config.RateLimitProperties;
+import com.yupi.yupao.manager.AuthTokenManager;
+import com.yupi.yupao.manager.RateLimitManager;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 接口限流拦截器
+ * 按配置的接口路径匹配规则，令牌模式按令牌中的用户 id 限流，session 模式按请求携带的会话 id 限流，都没有时按 IP 限流
+ * 限流 key 只从请求本身解析（令牌本地验签），不查询会话存储和数据库，被拒绝的请求不会访问任何服务
+ * 被限流时直接返回 429，不进入 Controller
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    @Resource
+    private RateLimitProperties rateLimitProperties;
+    @Resource
+    private RateLimitManager rateLimitManager;
+    @Resource
+    private AuthTokenManager authTokenManager;
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!rateLimitProperties.isEnabled() || CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+        String path = request.getServletPath();
+        for (Map.Entry<String, RateLimitProperties.Rule> entry : rateLimitProperties.getRules().entrySet()) {
+            RateLimitProperties.Rule rule = entry.getValue();
+            if (path.equals(rule.getPath()) && !rateLimitManager.tryAcquire(entry.getKey(), rule, buildKey(request))) {
+                reject(response);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String buildKey(HttpServletRequest request) {
+        if (authTokenManager.isTokenMode()) {
+            AuthTokenManager.TokenPayload tokenPayload = authTokenManager.verify(
+                    authTokenManager.resolveToken(request.getHeader(AuthTokenManager.HEADER_NAME)));
+            if (tokenPayload != null) {
+                return "user:" + tokenPayload.getUserId();
+            }
+        } else {
+            //不调用 getSession，避免从 Redis 加载会话
+            String sessionId = request.getRequestedSessionId();
+            if (StringUtils.isNotBlank(sessionId)) {
+                return "session:" + sessionId;
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response) throws Exception {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(objectMapper.writeValueAsString(ResultUtils.error(ErrorCode.TOO_MANY_REQUEST)));
+    }
+}
@@ -0,0 +1,39 @@
+package com.yupi.yupao.job;
+
+import com.yupi.yupao.manager.BloomFilterManager;
+import com.yupi.yupao.manager.LockManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时重建用户、队伍 id 布隆过滤器
+ * 每个实例都重建自己的本地副本，拿到锁且距上次发布满一个周期的实例发布新一代 Redis 副本
+ */
+@Component
+@Slf4j
+public class BloomFilterRebuildJob {
+    @Resource
+    private BloomFilterManager bloomFilterManager;
+    @Resource
+    private LockManager lockManager;
+
+    //启动时立即执行一次，之后每小时一次
+    @Scheduled(initialDelay = 0, fixedDelay = 60 * 60 * 1000)
+    public void doRebuild() {
+        LockManager.InstrumentedLock lock = lockManager.getLock("bloom_rebuild", "yupao:bloom:rebuild:lock");
+        try {
+            //锁只保证同一时刻只有一个实例发布，发布周期由 isPublishDue 控制，否则每个实例轮流拿到锁都会发布
+            boolean publishRedis = lock.tryLock(0, -1, TimeUnit.MILLISECONDS) && bloomFilterManager.isPublishDue();
+            bloomFilterManager.rebuild(publishRedis);
+        } catch (Exception e) {
+            log.error("doRebuild bloom filter error", e);
+        } finally {
+            //只能释放自己的锁
+            lock.unlock();
+        }
+    }
+}
@@ -2,11 +2,10 @@ package com.yupi.yupao.job;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.yupi.yupao.manager.LockManager;
 import com.yupi.yupao.model.domain.User;
 import com.yupi.yupao.service.UserService;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -28,17 +27,16 @@ public class PreCacheJob {
     @Resource
     private RedisTemplate<String,Object> redisTemplate;
     @Resource
-    private RedissonClient redissonClient;
+    private LockManager lockManager;
     //每天的第一个用户
     private List<Long> mainUserList =Arrays.asList(1L);
     @Scheduled(cron="0 0 6 * * ?")
     public void doCacheRecommend(){
         //获取锁
-        RLock lock = redissonClient.getLock("shayu:precachejob:docache:lock");
+        LockManager.InstrumentedLock lock = lockManager.getLock("precache", "shayu:precachejob:docache:lock");
         try{
             //只有一个线程可以获取倒锁
-            if (lock.tryLock(0,-1,TimeUnit.MILLISECONDS)){
-                System.out.printf("getLock:"+Thread.currentThread().getId());
+            if (lock.tryLock(0, -1, TimeUnit.MILLISECONDS)){
                 for (Long userId : mainUserList) {
                     //查数据
                     QueryWrapper<User> queryWrapper = new QueryWrapper<>();
@@ -57,10 +55,7 @@ public class PreCacheJob {
             log.error("doCacheRecommendUser error",e);
         }finally {
             //只能释放自己的锁
-            if (lock.isHeldByCurrentThread()){
-                System.out.printf("unlock"+Thread.currentThread().getId());
-                lock.unlock();
-            }
+            lock.unlock();
         }
 
     }
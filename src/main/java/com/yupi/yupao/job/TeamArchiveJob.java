@@ -0,0 +1,68 @@
+package com.yupi.yupao.job;
+
+import com.yupi.yupao.manager.LockManager;
+import com.yupi.yupao.mapper.TeamMapper;
+import com.yupi.yupao.service.TeamService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队伍归档
+ * 已过期、已删除的队伍及其关系分批迁移到归档表，热表只保留有效队伍
+ * 每批一个短事务，单次执行的批数有上限，避免长时间持锁
+ */
+@Component
+@Slf4j
+public class TeamArchiveJob {
+
+    /**
+     * 每批归档的队伍数
+     */
+    private static final int BATCH_SIZE = 200;
+
+    /**
+     * 单次执行最多归档的批数，剩下的留到下次
+     */
+    private static final int MAX_BATCH_NUM = 50;
+
+    @Resource
+    private TeamMapper teamMapper;
+    @Resource
+    private TeamService teamService;
+    @Resource
+    private LockManager lockManager;
+
+    //每天凌晨 4 点执行
+    @Scheduled(cron = "0 0 4 * * ?")
+    public void doArchive() {
+        LockManager.InstrumentedLock lock = lockManager.getLock("team_archive", "yupao:team:archive:lock");
+        try {
+            //只有一个实例执行
+            if (lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) {
+                int archiveNum = 0;
+                for (int i = 0; i < MAX_BATCH_NUM; i++) {
+                    List<Long> teamIdList = teamMapper.selectArchivableIds(new Date(), BATCH_SIZE);
+                    if (teamIdList.isEmpty()) {
+                        break;
+                    }
+                    archiveNum += teamService.archiveTeams(teamIdList);
+                    if (teamIdList.size() < BATCH_SIZE) {
+                        break;
+                    }
+                }
+                log.info("team archive finished, teams: {}", archiveNum);
+            }
+        } catch (InterruptedException e) {
+            log.error("doArchive team error", e);
+        } finally {
+            //只能释放自己的锁
+            lock.unlock();
+        }
+    }
+}
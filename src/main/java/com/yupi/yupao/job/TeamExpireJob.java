@@ -0,0 +1,106 @@
+package com.yupi.yupao.job;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.yupi.yupao.manager.LockManager;
+import com.yupi.yupao.manager.TeamExpireQueue;
+import com.yupi.yupao.mapper.TeamMapper;
+import com.yupi.yupao.model.domain.Team;
+import com.yupi.yupao.service.TeamService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队伍到期自动解散
+ * 从过期队列（Redis ZSET）中取出到期的队伍分批解散，不扫描队伍表
+ */
+@Component
+@Slf4j
+public class TeamExpireJob {
+
+    /**
+     * 每批解散的队伍数
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * 单次执行最多处理的批数
+     */
+    private static final int MAX_BATCH_NUM = 20;
+
+    /**
+     * 导入存量队伍时每页的大小
+     */
+    private static final int SEED_PAGE_SIZE = 5000;
+
+    @Resource
+    private TeamExpireQueue teamExpireQueue;
+    @Resource
+    private TeamService teamService;
+    @Resource
+    private TeamMapper teamMapper;
+    @Resource
+    private LockManager lockManager;
+
+    //每 30 秒检查一次到期队伍
+    @Scheduled(initialDelay = 10 * 1000, fixedDelay = 30 * 1000)
+    public void doExpire() {
+        LockManager.InstrumentedLock lock = lockManager.getLock("team_expire", "yupao:team:expire:lock");
+        try {
+            //只有一个实例执行
+            if (lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) {
+                //上线前创建的队伍不在队列里，只在第一次执行时导入一次
+                if (teamExpireQueue.tryMarkSeeded()) {
+                    seedQueue();
+                }
+                for (int i = 0; i < MAX_BATCH_NUM; i++) {
+                    List<Long> teamIdList = teamExpireQueue.pollDue(BATCH_SIZE);
+                    if (teamIdList.isEmpty()) {
+                        break;
+                    }
+                    List<Long> expiredIdList = teamService.expireTeams(teamIdList);
+                    if (!expiredIdList.isEmpty()) {
+                        log.info("teams expired and dissolved: {}", expiredIdList);
+                    }
+                    if (teamIdList.size() < BATCH_SIZE) {
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("doExpire team error", e);
+        } finally {
+            //只能释放自己的锁
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 存量有过期时间的队伍导入队列
+     */
+    private void seedQueue() {
+        long lastId = 0;
+        while (true) {
+            QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id", "expireTime").isNotNull("expireTime").gt("id", lastId)
+                    .orderByAsc("id").last("limit " + SEED_PAGE_SIZE);
+            List<Team> teamList = teamMapper.selectList(queryWrapper);
+            Map<Long, Date> teamIdExpireTimeMap = new HashMap<>();
+            for (Team team : teamList) {
+                teamIdExpireTimeMap.put(team.getId(), team.getExpireTime());
+                lastId = team.getId();
+            }
+            teamExpireQueue.scheduleAll(teamIdExpireTimeMap);
+            if (teamList.size() < SEED_PAGE_SIZE) {
+                return;
+            }
+        }
+    }
+}
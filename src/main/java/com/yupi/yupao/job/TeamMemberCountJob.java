@@ -0,0 +1,52 @@
+package com.yupi.yupao.job;
+
+import com.yupi.yupao.manager.LockManager;
+import com.yupi.yupao.manager.TeamJoinAdmissionManager;
+import com.yupi.yupao.manager.TeamListCacheManager;
+import com.yupi.yupao.mapper.TeamMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队伍已加入人数对账
+ * memberCount 是冗余字段，定时按 user_team 实际关系修正偏差
+ * 有修正时让队伍列表缓存失效，并清除 Lua 准入的人数计数，按修正后的人数重新加载
+ */
+@Component
+@Slf4j
+public class TeamMemberCountJob {
+    @Resource
+    private TeamMapper teamMapper;
+    @Resource
+    private LockManager lockManager;
+    @Resource
+    private TeamListCacheManager teamListCacheManager;
+    @Resource
+    private TeamJoinAdmissionManager teamJoinAdmissionManager;
+
+    //每天凌晨 3 点执行
+    @Scheduled(cron = "0 0 3 * * ?")
+    public void doReconcile() {
+        LockManager.InstrumentedLock lock = lockManager.getLock("team_member_count", "yupao:team:member_count:reconcile:lock");
+        try {
+            //只有一个实例执行
+            if (lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) {
+                int fixedNum = teamMapper.reconcileMemberCount();
+                if (fixedNum > 0) {
+                    log.warn("team memberCount drift fixed, teams: {}", fixedNum);
+                    teamListCacheManager.bumpVersion();
+                    teamJoinAdmissionManager.evictAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("doReconcile memberCount error", e);
+        } finally {
+            //只能释放自己的锁
+            lock.unlock();
+        }
+    }
+}
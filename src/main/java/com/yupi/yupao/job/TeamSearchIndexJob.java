@@ -0,0 +1,42 @@
+package com.yupi.yupao.job;
+
+import com.yupi.yupao.manager.TeamSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 定时全量重建队伍搜索索引，定时拉取其他实例的变更
+ * 索引是每个实例的内存数据，不需要加分布式锁
+ */
+@Component
+@Slf4j
+public class TeamSearchIndexJob {
+    @Resource
+    private TeamSearchIndex teamSearchIndex;
+
+    //启动时立即构建，之后每 10 分钟重建一次，兜底其他实例的写入
+    @Scheduled(initialDelay = 0, fixedDelay = 10 * 60 * 1000)
+    public void doRebuild() {
+        try {
+            teamSearchIndex.rebuild();
+        } catch (Exception e) {
+            log.error("doRebuild team search index error", e);
+        }
+    }
+
+    //每 5 秒拉取一次其他实例的变更
+    @Scheduled(initialDelay = 5 * 1000, fixedDelay = 5 * 1000)
+    public void doSync() {
+        if (!teamSearchIndex.isReady()) {
+            return;
+        }
+        try {
+            teamSearchIndex.syncChanges();
+        } catch (Exception e) {
+            log.error("doSync team search index error", e);
+        }
+    }
+}
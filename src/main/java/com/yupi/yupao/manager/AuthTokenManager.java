@@ -0,0 +1,235 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.model.domain.User;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 无状态登录令牌（yupao.auth.mode = token）
+ * 1. 令牌：base64url(用户 id:角色:过期时间:令牌 id) + "." + base64url(HMAC-SHA256 签名)，本地验签，不访问 Session
+ * 2. 签名用 MessageDigest.isEqual 比较，耗时与内容无关
+ * 3. 注销的令牌 id 写入 Redis 黑名单：yupao:auth:denylist（zset，分数为令牌过期时间），各实例定时拉取到本地，验证时只查本地
+ */
+@Component
+@Slf4j
+public class AuthTokenManager {
+
+    public static final String MODE_SESSION = "session";
+
+    public static final String MODE_TOKEN = "token";
+
+    public static final String HEADER_NAME = "Authorization";
+
+    public static final String TOKEN_PREFIX = "Bearer ";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final String DENYLIST_KEY = "yupao:auth:denylist";
+
+    @Value("${yupao.auth.mode:session}")
+    private String mode;
+
+    @Value("${yupao.auth.token-secret:}")
+    private String tokenSecret;
+
+    @Value("${yupao.auth.token-ttl-hours:24}")
+    private long tokenTtlHours;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Mac 不是线程安全的，每个线程一个
+     */
+    private ThreadLocal<Mac> macThreadLocal;
+
+    /**
+     * 本地黑名单快照，定时整体替换
+     */
+    private volatile Set<String> localDenylist = Collections.emptySet();
+
+    @PostConstruct
+    public void init() {
+        if (!isTokenMode()) {
+            return;
+        }
+        if (StringUtils.isBlank(tokenSecret) || tokenSecret.length() < 32) {
+            throw new IllegalStateException("yupao.auth.token-secret must be at least 32 characters in token mode");
+        }
+        SecretKeySpec keySpec = new SecretKeySpec(tokenSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        macThreadLocal = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(keySpec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("init token mac error", e);
+            }
+        });
+        refreshDenylist();
+    }
+
+    /**
+     * 是否使用令牌登录
+     * @return
+     */
+    public boolean isTokenMode() {
+        return MODE_TOKEN.equals(mode);
+    }
+
+    /**
+     * 签发令牌
+     * @param user 需要 id 和角色
+     * @return
+     */
+    public String issue(User user) {
+        long expireAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(tokenTtlHours);
+        String tokenId = UUID.randomUUID().toString().replace("-", "");
+        int userRole = Optional.ofNullable(user.getUserRole()).orElse(0);
+        String payload = user.getId() + ":" + userRole + ":" + expireAt + ":" + tokenId;
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * 校验令牌
+     * @param token 不含 Bearer 前缀
+     * @return 签名不对、已过期、已注销时返回 null
+     */
+    public TokenPayload verify(String token) {
+        if (StringUtils.isBlank(token)) {
+            return null;
+        }
+        int dotIndex = token.indexOf('.');
+        if (dotIndex <= 0 || dotIndex == token.length() - 1) {
+            return null;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payloadBytes = decoder.decode(token.substring(0, dotIndex));
+            byte[] signature = decoder.decode(token.substring(dotIndex + 1));
+            if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+                return null;
+            }
+            String[] parts = new String(payloadBytes, StandardCharsets.UTF_8).split(":");
+            if (parts.length != 4) {
+                return null;
+            }
+            TokenPayload tokenPayload = new TokenPayload(Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                    Long.parseLong(parts[2]), parts[3]);
+            if (tokenPayload.getExpireAt() <= System.currentTimeMillis() || localDenylist.contains(tokenPayload.getTokenId())) {
+                return null;
+            }
+            return tokenPayload;
+        } catch (IllegalArgumentException e) {
+            //Base64 或数字格式不对
+            return null;
+        }
+    }
+
+    /**
+     * 从请求头中取出令牌
+     * @param authorization Authorization 请求头
+     * @return 没有时返回 null
+     */
+    public String resolveToken(String authorization) {
+        if (authorization == null || !authorization.startsWith(TOKEN_PREFIX)) {
+            return null;
+        }
+        return authorization.substring(TOKEN_PREFIX.length()).trim();
+    }
+
+    /**
+     * 注销令牌（写入黑名单，保留到令牌过期）
+     * @param tokenPayload
+     */
+    public void revoke(TokenPayload tokenPayload) {
+        stringRedisTemplate.opsForZSet().add(DENYLIST_KEY, tokenPayload.getTokenId(), tokenPayload.getExpireAt());
+        //本实例立即生效，其他实例在下一次拉取后生效
+        Set<String> newDenylist = new HashSet<>(localDenylist);
+        newDenylist.add(tokenPayload.getTokenId());
+        localDenylist = newDenylist;
+    }
+
+    /**
+     * 拉取黑名单到本地，顺便清理已过期的令牌
+     */
+    @Scheduled(initialDelay = 5 * 1000, fixedDelay = 5 * 1000)
+    public void refreshDenylist() {
+        if (!isTokenMode()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            stringRedisTemplate.opsForZSet().removeRangeByScore(DENYLIST_KEY, 0, now);
+            Set<String> tokenIdSet = stringRedisTemplate.opsForZSet().rangeByScore(DENYLIST_KEY, now, Double.MAX_VALUE);
+            localDenylist = tokenIdSet == null ? Collections.emptySet() : new HashSet<>(tokenIdSet);
+        } catch (Exception e) {
+            //保留上一次的快照
+            log.error("redis refresh token denylist error", e);
+        }
+    }
+
+    private byte[] sign(byte[] payloadBytes) {
+        Mac mac = macThreadLocal.get();
+        mac.reset();
+        return mac.doFinal(payloadBytes);
+    }
+
+    /**
+     * 令牌内容
+     */
+    public static class TokenPayload {
+
+        private final long userId;
+
+        private final int userRole;
+
+        private final long expireAt;
+
+        private final String tokenId;
+
+        TokenPayload(long userId, int userRole, long expireAt, String tokenId) {
+            this.userId = userId;
+            this.userRole = userRole;
+            this.expireAt = expireAt;
+            this.tokenId = tokenId;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public int getUserRole() {
+            return userRole;
+        }
+
+        public long getExpireAt() {
+            return expireAt;
+        }
+
+        public String getTokenId() {
+            return tokenId;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.common.ErrorCode;
+import com.yupi.yupao.exception.BusinessException;
+import com.yupi.yupao.model.vo.BatchTaskVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 管理员批量任务（批量删除用户、队伍）
+ * 1. 按 id 升序分块处理（键集分页），每块一个短事务，不长时间持有锁
+ * 2. 单线程执行，同一时刻只占用一个数据库连接，排队的任务数有上限
+ * 3. 进度记录在 Redis：yupao:batch:task:{taskId}（hash），保留一天
+ */
+@Component
+@Slf4j
+public class BatchTaskManager {
+
+    public static final String STATUS_RUNNING = "running";
+
+    public static final String STATUS_SUCCEED = "succeed";
+
+    public static final String STATUS_FAILED = "failed";
+
+    /**
+     * 每块处理的 id 数
+     */
+    public static final int CHUNK_SIZE = 200;
+
+    private static final String KEY_PREFIX = "yupao:batch:task:";
+
+    private static final long TASK_TTL_HOURS = 24;
+
+    /**
+     * 最多排队的任务数
+     */
+    private static final int MAX_PENDING_TASK = 16;
+
+    private final ExecutorService executorService = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_TASK),
+            runnable -> {
+                Thread thread = new Thread(runnable, "batch-task");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 提交批量任务
+     * @param action 任务类型
+     * @param total 待处理总数
+     * @param nextChunk 取下一块：上一块最大的 id -> 之后按 id 升序的最多 CHUNK_SIZE 个 id，没有时返回空列表
+     * @param chunkHandler 处理一块（自行开启事务）-> 实际处理的数量
+     * @return 任务 id
+     */
+    public String submit(String action, long total, Function<Long, List<Long>> nextChunk,
+                         Function<List<Long>, Integer> chunkHandler) {
+        String taskId = UUID.randomUUID().toString().replace("-", "");
+        String key = KEY_PREFIX + taskId;
+        Map<String, String> taskMap = new HashMap<>();
+        taskMap.put("action", action);
+        taskMap.put("status", STATUS_RUNNING);
+        taskMap.put("total", String.valueOf(total));
+        taskMap.put("processed", "0");
+        taskMap.put("affected", "0");
+        stringRedisTemplate.opsForHash().putAll(key, taskMap);
+        stringRedisTemplate.expire(key, TASK_TTL_HOURS, TimeUnit.HOURS);
+        try {
+            executorService.execute(() -> run(key, nextChunk, chunkHandler));
+        } catch (RejectedExecutionException e) {
+            stringRedisTemplate.delete(key);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "批量任务过多，请稍后重试");
+        }
+        return taskId;
+    }
+
+    /**
+     * 查询任务进度
+     * @param taskId
+     * @return 不存在或已过期时返回 null
+     */
+    public BatchTaskVO get(String taskId) {
+        if (StringUtils.isBlank(taskId)) {
+            return null;
+        }
+        Map<Object, Object> taskMap = stringRedisTemplate.opsForHash().entries(KEY_PREFIX + taskId);
+        if (taskMap.isEmpty()) {
+            return null;
+        }
+        BatchTaskVO batchTaskVO = new BatchTaskVO();
+        batchTaskVO.setTaskId(taskId);
+        batchTaskVO.setAction((String) taskMap.get("action"));
+        batchTaskVO.setStatus((String) taskMap.get("status"));
+        batchTaskVO.setTotal(Long.parseLong((String) taskMap.getOrDefault("total", "0")));
+        batchTaskVO.setProcessed(Long.parseLong((String) taskMap.getOrDefault("processed", "0")));
+        batchTaskVO.setAffected(Long.parseLong((String) taskMap.getOrDefault("affected", "0")));
+        batchTaskVO.setMessage((String) taskMap.get("message"));
+        return batchTaskVO;
+    }
+
+    private void run(String key, Function<Long, List<Long>> nextChunk, Function<List<Long>, Integer> chunkHandler) {
+        long lastId = 0;
+        try {
+            while (true) {
+                List<Long> idList = nextChunk.apply(lastId);
+                if (idList.isEmpty()) {
+                    break;
+                }
+                int affected = chunkHandler.apply(idList);
+                lastId = idList.get(idList.size() - 1);
+                stringRedisTemplate.opsForHash().increment(key, "processed", idList.size());
+                stringRedisTemplate.opsForHash().increment(key, "affected", affected);
+            }
+            stringRedisTemplate.opsForHash().put(key, "status", STATUS_SUCCEED);
+        } catch (Exception e) {
+            log.error("batch task error, key: {}, lastId: {}", key, lastId, e);
+            //已完成的块不回滚，重新提交会跳过已删除的数据
+            Map<String, String> failMap = new HashMap<>();
+            failMap.put("status", STATUS_FAILED);
+            failMap.put("message", e instanceof BusinessException ? ((BusinessException) e).getDescription() : "处理失败");
+            stringRedisTemplate.opsForHash().putAll(key, failMap);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdown();
+    }
+}
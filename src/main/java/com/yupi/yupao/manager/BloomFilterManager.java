@@ -0,0 +1,228 @@
+package com.yupi.yupao.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.yupi.yupao.mapper.TeamMapper;
+import com.yupi.yupao.mapper.UserMapper;
+import com.yupi.yupao.model.domain.User;
+import com.yupi.yupao.utlis.LocalBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 布隆过滤器（防止不存在的 id、账号打到数据库）
+ * 1. 本地副本：查询优先走本地，本地判定不存在时再查 Redis（其他实例新写入的 id 只在 Redis 中）
+ * 2. Redis 副本：按代（generation）重建，每个周期只由一个实例发布新的一代，切换后旧的一代延迟过期
+ * 3. 过滤器未就绪或 Redis 异常时一律放行，交给数据库判断
+ */
+@Component
+@Slf4j
+public class BloomFilterManager {
+
+    /**
+     * 从数据库加载 id 时每页的大小
+     */
+    private static final int LOAD_PAGE_SIZE = 5000;
+
+    /**
+     * 发布 Redis 副本的周期
+     */
+    private static final long PUBLISH_INTERVAL_MINUTES = 60;
+
+    /**
+     * 发布周期的容差，避免定时任务执行时间的抖动导致跳过一个周期
+     */
+    private static final long PUBLISH_TOLERANCE_MINUTES = 5;
+
+    /**
+     * 最近一次发布的标记，存在时不再发布
+     */
+    private static final String PUBLISHED_KEY = "yupao:bloom:published";
+
+    @Resource
+    private RedissonClient redissonClient;
+    @Resource
+    private UserMapper userMapper;
+    @Resource
+    private TeamMapper teamMapper;
+
+    private GenerationalBloomFilter<Long> userIdFilter;
+
+    private GenerationalBloomFilter<Long> teamIdFilter;
+
+    private GenerationalBloomFilter<String> userAccountFilter;
+
+    private GenerationalBloomFilter<String> planetCodeFilter;
+
+    @PostConstruct
+    public void init() {
+        userIdFilter = new GenerationalBloomFilter<>(redissonClient, "yupao:bloom:user:id", LocalBloomFilter::hash);
+        teamIdFilter = new GenerationalBloomFilter<>(redissonClient, "yupao:bloom:team:id", LocalBloomFilter::hash);
+        userAccountFilter = new GenerationalBloomFilter<>(redissonClient, "yupao:bloom:user:account", LocalBloomFilter::hash);
+        planetCodeFilter = new GenerationalBloomFilter<>(redissonClient, "yupao:bloom:user:planet_code", LocalBloomFilter::hash);
+    }
+
+    /**
+     * 用户 id 是否可能存在
+     * @param userId
+     * @return false 表示一定不存在
+     */
+    public boolean mightContainUser(long userId) {
+        return userIdFilter.mightContain(userId);
+    }
+
+    /**
+     * 队伍 id 是否可能存在
+     * @param teamId
+     * @return false 表示一定不存在
+     */
+    public boolean mightContainTeam(long teamId) {
+        return teamIdFilter.mightContain(teamId);
+    }
+
+    /**
+     * 账号是否可能存在（注册查重、登录前判断）
+     * @param userAccount
+     * @return false 表示一定不存在
+     */
+    public boolean mightContainAccount(String userAccount) {
+        return userAccountFilter.mightContain(userAccount);
+    }
+
+    /**
+     * 账号是否可能存在（严格模式，登录用）
+     * 本实例的本地副本落后于 Redis 中的当前一代时一律放行，拒绝已存在用户的登录代价比多查一次库大
+     * @param userAccount
+     * @return false 表示一定不存在
+     */
+    public boolean mightContainAccountStrictly(String userAccount) {
+        return userAccountFilter.mightContain(userAccount, true);
+    }
+
+    /**
+     * 星球编号是否可能存在
+     * @param planetCode
+     * @return false 表示一定不存在
+     */
+    public boolean mightContainPlanetCode(String planetCode) {
+        return planetCodeFilter.mightContain(planetCode);
+    }
+
+    /**
+     * 新用户写入过滤器
+     * @param userId
+     */
+    public void addUser(long userId) {
+        userIdFilter.add(userId);
+    }
+
+    /**
+     * 新用户的账号、星球编号写入过滤器
+     * @param userAccount
+     * @param planetCode
+     */
+    public void addUserCredential(String userAccount, String planetCode) {
+        if (userAccount != null) {
+            userAccountFilter.add(userAccount);
+        }
+        if (planetCode != null) {
+            planetCodeFilter.add(planetCode);
+        }
+    }
+
+    /**
+     * 新队伍写入过滤器
+     * @param teamId
+     */
+    public void addTeam(long teamId) {
+        teamIdFilter.add(teamId);
+    }
+
+    /**
+     * 是否到了发布 Redis 副本的时间（距上次发布满一个周期）
+     * @return
+     */
+    public boolean isPublishDue() {
+        return !redissonClient.getBucket(PUBLISHED_KEY).isExists();
+    }
+
+    /**
+     * 从数据库重建过滤器
+     * 先开始重建（发布时标记下一代，之后新增的元素同时写入两代），再从数据库加载
+     * @param publishRedis 是否同时发布新一代 Redis 过滤器（只有拿到锁且到了发布时间的实例才发布）
+     */
+    public void rebuild(boolean publishRedis) {
+        long userCount = userMapper.selectCount(null);
+        long teamCount = teamMapper.selectCount(null);
+        GenerationalBloomFilter<Long>.Rebuild userIdRebuild = userIdFilter.beginRebuild(publishRedis, userCount);
+        GenerationalBloomFilter<Long>.Rebuild teamIdRebuild = teamIdFilter.beginRebuild(publishRedis, teamCount);
+        GenerationalBloomFilter<String>.Rebuild userAccountRebuild = userAccountFilter.beginRebuild(publishRedis, userCount);
+        GenerationalBloomFilter<String>.Rebuild planetCodeRebuild = planetCodeFilter.beginRebuild(publishRedis, userCount);
+        userIdFilter.finishRebuild(userIdRebuild, loadAllIds(userMapper));
+        teamIdFilter.finishRebuild(teamIdRebuild, loadAllIds(teamMapper));
+        List<String> userAccountList = new ArrayList<>();
+        List<String> planetCodeList = new ArrayList<>();
+        loadAllUserCredentials(userAccountList, planetCodeList);
+        userAccountFilter.finishRebuild(userAccountRebuild, userAccountList);
+        planetCodeFilter.finishRebuild(planetCodeRebuild, planetCodeList);
+        if (publishRedis) {
+            redissonClient.getBucket(PUBLISHED_KEY).set(System.currentTimeMillis(),
+                    PUBLISH_INTERVAL_MINUTES - PUBLISH_TOLERANCE_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * 按 id 游标分页加载所有未删除记录的 id，只查 id 一列
+     * @param mapper
+     * @return
+     */
+    private <T> List<Long> loadAllIds(BaseMapper<T> mapper) {
+        List<Long> idList = new ArrayList<>();
+        long lastId = 0;
+        while (true) {
+            QueryWrapper<T> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id").gt("id", lastId).orderByAsc("id").last("limit " + LOAD_PAGE_SIZE);
+            List<Object> page = mapper.selectObjs(queryWrapper);
+            for (Object id : page) {
+                idList.add(((Number) id).longValue());
+            }
+            if (page.size() < LOAD_PAGE_SIZE) {
+                return idList;
+            }
+            lastId = idList.get(idList.size() - 1);
+        }
+    }
+
+    /**
+     * 按 id 游标分页加载所有未删除用户的账号、星球编号
+     * @param userAccountList
+     * @param planetCodeList
+     */
+    private void loadAllUserCredentials(List<String> userAccountList, List<String> planetCodeList) {
+        long lastId = 0;
+        while (true) {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id", "userAccount", "planetCode").gt("id", lastId).orderByAsc("id").last("limit " + LOAD_PAGE_SIZE);
+            List<User> page = userMapper.selectList(queryWrapper);
+            for (User user : page) {
+                if (user.getUserAccount() != null) {
+                    userAccountList.add(user.getUserAccount());
+                }
+                if (user.getPlanetCode() != null) {
+                    planetCodeList.add(user.getPlanetCode());
+                }
+            }
+            if (page.size() < LOAD_PAGE_SIZE) {
+                return;
+            }
+            lastId = page.get(page.size() - 1).getId();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.utlis.LocalBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RedissonClient;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按代重建的布隆过滤器（本地副本 + Redis 副本）
+ * Redis 中的键：
+ * 1. {前缀}:gen 当前一代，{前缀}:{代} 该代的过滤器
+ * 2. {前缀}:building 正在重建的下一代（重建期间存在），新增的元素同时写入当前一代和下一代
+ * 多实例：
+ * 1. 只有一个实例发布新的一代，其他实例只重建本地副本
+ * 2. 每次写入、本地判定不存在时都重新读取当前一代，不依赖本地记录的代，其他实例发布后立即切换
+ * 3. 发布方先标记重建中、再从数据库加载：加载时还没提交的元素，提交后写入时一定能看到重建标记
+ * 4. 写入 Redis 失败时计数 {前缀}:dirty +1（Redis 不可用时恢复后补记），计数不为 0 时所有实例判定不存在前一律放行；
+ *    发布时只有计数在开始重建后没有变化才清零，开始重建前写入失败的元素一定已从数据库加载到新的一代
+ * @param <E>
+ */
+@Slf4j
+class GenerationalBloomFilter<E> {
+
+    /**
+     * 误判率
+     */
+    private static final double FALSE_PROBABILITY = 0.01;
+
+    /**
+     * 最小预计插入数量
+     */
+    private static final long MIN_EXPECTED_INSERTIONS = 10000L;
+
+    /**
+     * 旧一代过滤器保留的时间：切换后仍在读写旧一代的请求（已读取代号、尚未访问过滤器）足够完成
+     */
+    private static final long OLD_GENERATION_TTL_MINUTES = 10;
+
+    /**
+     * 重建标记的有效期，发布方异常退出时自动清除
+     */
+    private static final long BUILDING_TTL_MINUTES = 30;
+
+    private final RedissonClient redissonClient;
+
+    private final String keyPrefix;
+
+    private final ToLongFunction<E> hashFunction;
+
+    private volatile LocalBloomFilter local;
+
+    /**
+     * 本地副本重建完成时 Redis 中的当前一代
+     */
+    private volatile long localGeneration = -1;
+
+    /**
+     * 本地重建期间新增的元素，重建完成后补写到新的本地副本
+     */
+    private volatile ConcurrentLinkedQueue<E> pending;
+
+    /**
+     * 写入失败但还没记到 Redis 中（Redis 不可用）
+     */
+    private final AtomicBoolean dirtyUnmarked = new AtomicBoolean();
+
+    GenerationalBloomFilter(RedissonClient redissonClient, String keyPrefix, ToLongFunction<E> hashFunction) {
+        this.redissonClient = redissonClient;
+        this.keyPrefix = keyPrefix;
+        this.hashFunction = hashFunction;
+    }
+
+    /**
+     * 是否可能存在
+     * @param element
+     * @return false 表示一定不存在
+     */
+    boolean mightContain(E element) {
+        return mightContain(element, false);
+    }
+
+    /**
+     * 是否可能存在
+     * @param element
+     * @param strict 严格模式：本地副本落后于 Redis 中的当前一代（其他实例刚发布、本实例还没重建）时直接返回 true
+     * @return false 表示一定不存在
+     */
+    boolean mightContain(E element, boolean strict) {
+        LocalBloomFilter current = local;
+        if (current == null || current.mightContain(hashFunction.applyAsLong(element))) {
+            return true;
+        }
+        //本地没有，可能是其他实例写入的，按 Redis 中的当前一代再查一次
+        try {
+            markDirtyIfNeeded();
+            long generation = generation().get();
+            if (generation <= 0 || (strict && generation != localGeneration) || dirty().get() > 0) {
+                return true;
+            }
+            return redisFilter(generation).contains(element);
+        } catch (Exception e) {
+            log.error("redis bloom filter contains error, key: {}", keyPrefix, e);
+            return true;
+        }
+    }
+
+    void add(E element) {
+        //先写重建队列再写本地副本：读到队列已清空时，读到的本地副本一定是重建后的
+        ConcurrentLinkedQueue<E> currentPending = pending;
+        if (currentPending != null) {
+            currentPending.add(element);
+        }
+        LocalBloomFilter current = local;
+        if (current != null) {
+            current.put(hashFunction.applyAsLong(element));
+        }
+        markDirtyIfNeeded();
+        try {
+            //先读重建标记再读当前一代：读到标记已清除时，新的一代一定已经是当前一代
+            long building = building().get();
+            long generation = generation().get();
+            if (generation > 0) {
+                redisFilter(generation).add(element);
+            }
+            if (building > generation) {
+                redisFilter(building).add(element);
+            }
+        } catch (Exception e) {
+            log.error("redis bloom filter add error, key: {}", keyPrefix, e);
+            //其他实例的本地副本和 Redis 中都没有该元素，标记后由它们放行
+            dirtyUnmarked.set(true);
+            markDirtyIfNeeded();
+        }
+    }
+
+    /**
+     * 把未记录的写入失败记到 Redis 中
+     */
+    private void markDirtyIfNeeded() {
+        if (!dirtyUnmarked.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            dirty().incrementAndGet();
+        } catch (Exception e) {
+            log.error("redis bloom filter mark dirty error, key: {}", keyPrefix, e);
+            dirtyUnmarked.set(true);
+        }
+    }
+
+    /**
+     * 开始重建，需要在从数据库加载之前调用
+     * @param publishRedis 是否发布新的一代 Redis 过滤器
+     * @param expectedSize 预计元素数量
+     * @return 重建上下文
+     */
+    Rebuild beginRebuild(boolean publishRedis, long expectedSize) {
+        ConcurrentLinkedQueue<E> currentPending = new ConcurrentLinkedQueue<>();
+        pending = currentPending;
+        long newGeneration = -1;
+        long dirtyCount = 0;
+        long expectedInsertions = Math.max(expectedSize * 2, MIN_EXPECTED_INSERTIONS);
+        if (publishRedis) {
+            //先读失败计数再从数据库加载
+            dirtyCount = dirty().get();
+            newGeneration = generation().get() + 1;
+            RBloomFilter<E> newFilter = redisFilter(newGeneration);
+            newFilter.delete();
+            newFilter.tryInit(expectedInsertions, FALSE_PROBABILITY);
+            RAtomicLong building = building();
+            building.set(newGeneration);
+            building.expire(BUILDING_TTL_MINUTES, TimeUnit.MINUTES);
+        }
+        return new Rebuild(currentPending, newGeneration, dirtyCount, expectedInsertions);
+    }
+
+    /**
+     * 完成重建：写入从数据库加载的元素，发布时切换到新的一代
+     * @param rebuild beginRebuild 的返回值
+     * @param elementList beginRebuild 之后从数据库加载的元素
+     */
+    void finishRebuild(Rebuild rebuild, List<E> elementList) {
+        LocalBloomFilter newLocal = new LocalBloomFilter(Math.max(elementList.size() * 2L, MIN_EXPECTED_INSERTIONS), FALSE_PROBABILITY);
+        for (E element : elementList) {
+            newLocal.put(hashFunction.applyAsLong(element));
+        }
+        long newGeneration = rebuild.newGeneration;
+        if (newGeneration > 0) {
+            RBloomFilter<E> newFilter = redisFilter(newGeneration);
+            //重建期间新的一代被淘汰或清空时重新初始化，期间双写的元素由本地副本和下一次重建兜底
+            newFilter.tryInit(rebuild.expectedInsertions, FALSE_PROBABILITY);
+            for (E element : elementList) {
+                newFilter.add(element);
+            }
+            long oldGeneration = generation().getAndSet(newGeneration);
+            building().delete();
+            //重建期间又有写入失败时计数已变化，保留到下一次发布
+            if (rebuild.dirtyCount > 0) {
+                dirty().compareAndSet(rebuild.dirtyCount, 0);
+            }
+            if (oldGeneration > 0) {
+                redisFilter(oldGeneration).expire(OLD_GENERATION_TTL_MINUTES, TimeUnit.MINUTES);
+            }
+        } else {
+            newGeneration = generation().get();
+        }
+        local = newLocal;
+        localGeneration = newGeneration;
+        pending = null;
+        //补写本地重建期间新增的元素（Redis 中已由 add 写入）
+        for (E element : rebuild.pending) {
+            newLocal.put(hashFunction.applyAsLong(element));
+        }
+    }
+
+    private RAtomicLong generation() {
+        return redissonClient.getAtomicLong(keyPrefix + ":gen");
+    }
+
+    private RAtomicLong building() {
+        return redissonClient.getAtomicLong(keyPrefix + ":building");
+    }
+
+    private RAtomicLong dirty() {
+        return redissonClient.getAtomicLong(keyPrefix + ":dirty");
+    }
+
+    private RBloomFilter<E> redisFilter(long generation) {
+        return redissonClient.getBloomFilter(keyPrefix + ":" + generation);
+    }
+
+    /**
+     * 一次重建的上下文
+     */
+    class Rebuild {
+
+        private final ConcurrentLinkedQueue<E> pending;
+
+        /**
+         * 发布的新一代，不发布时为 -1
+         */
+        private final long newGeneration;
+
+        /**
+         * 开始重建时的写入失败计数
+         */
+        private final long dirtyCount;
+
+        private final long expectedInsertions;
+
+        Rebuild(ConcurrentLinkedQueue<E> pending, long newGeneration, long dirtyCount, long expectedInsertions) {
+            this.pending = pending;
+            this.newGeneration = newGeneration;
+            this.dirtyCount = dirtyCount;
+            this.expectedInsertions = expectedInsertions;
+        }
+    }
+}
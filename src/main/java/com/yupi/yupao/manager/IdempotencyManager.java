@@ -0,0 +1,219 @@
+package com.yupi.yupao.manager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yupi.yupao.common.ErrorCode;
+import com.yupi.yupao.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.Resource;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 幂等键（请求头 Idempotency-Key）
+ * 1. Redis：yupao:idempotency:{action}:{userId}:{key}，值为 请求参数摘要|内容，首次请求先占位 PENDING，成功后记录结果（JSON）
+ * 2. 重试请求直接返回记录的结果，一次查询，不再执行业务逻辑；占位期间的重复请求直接拒绝
+ * 3. 同一个幂等键携带不同的请求参数时拒绝，不返回其他请求的结果
+ * 4. 业务失败时删除占位，允许重试；调用方等待超时取消时保留占位（业务可能仍在执行），到期后才允许重试
+ * 5. Redis 异常时不做幂等，直接执行
+ */
+@Component
+@Slf4j
+public class IdempotencyManager {
+
+    public static final String HEADER_NAME = "Idempotency-Key";
+
+    private static final String KEY_PREFIX = "yupao:idempotency:";
+
+    private static final String PENDING = "PENDING";
+
+    /**
+     * 请求参数摘要与内容的分隔符
+     */
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 同步执行时占位的过期时间，需要大于业务的最长执行时间
+     */
+    private static final long PENDING_TTL_MILLIS = 30 * 1000;
+
+    /**
+     * 异步执行时占位的过期时间与调用方等待时间的倍数：等待超时取消时已开始的业务仍在执行，需要留出执行完成的时间
+     */
+    private static final long ASYNC_PENDING_TTL_FACTOR = 3;
+
+    /**
+     * 结果保留时间
+     */
+    private static final long RESULT_TTL_HOURS = 24;
+
+    /**
+     * 幂等键最大长度
+     */
+    private static final int MAX_KEY_LENGTH = 64;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 幂等执行
+     * @param action 接口名，不同接口的幂等键互不影响
+     * @param userId
+     * @param idempotencyKey 为空时直接执行
+     * @param payload 请求参数，相同幂等键的请求参数必须相同
+     * @param resultClass
+     * @param supplier 业务逻辑
+     * @return
+     */
+    public <T> T execute(String action, long userId, String idempotencyKey, Object payload, Class<T> resultClass, Supplier<T> supplier) {
+        if (StringUtils.isBlank(idempotencyKey)) {
+            return supplier.get();
+        }
+        String key = buildKey(action, userId, idempotencyKey);
+        String payloadDigest = digest(payload);
+        String recorded = tryBegin(key, payloadDigest, PENDING_TTL_MILLIS);
+        if (recorded != null) {
+            return parse(recorded, resultClass);
+        }
+        T result;
+        try {
+            result = supplier.get();
+        } catch (RuntimeException e) {
+            abort(key);
+            throw e;
+        }
+        record(key, payloadDigest, result);
+        return result;
+    }
+
+    /**
+     * 幂等执行（异步结果）
+     * @param action 接口名，不同接口的幂等键互不影响
+     * @param userId
+     * @param idempotencyKey 为空时直接执行
+     * @param payload 请求参数，相同幂等键的请求参数必须相同
+     * @param timeoutMillis 调用方等待结果的最长时间，超时后会取消返回的 future
+     * @param resultClass
+     * @param supplier 业务逻辑
+     * @return
+     */
+    public <T> CompletableFuture<T> executeAsync(String action, long userId, String idempotencyKey, Object payload, long timeoutMillis,
+                                                 Class<T> resultClass, Supplier<CompletableFuture<T>> supplier) {
+        if (StringUtils.isBlank(idempotencyKey)) {
+            return supplier.get();
+        }
+        String key = buildKey(action, userId, idempotencyKey);
+        String payloadDigest = digest(payload);
+        String recorded = tryBegin(key, payloadDigest, timeoutMillis * ASYNC_PENDING_TTL_FACTOR);
+        if (recorded != null) {
+            return CompletableFuture.completedFuture(parse(recorded, resultClass));
+        }
+        CompletableFuture<T> future;
+        try {
+            future = supplier.get();
+        } catch (RuntimeException e) {
+            abort(key);
+            throw e;
+        }
+        future.whenComplete((result, e) -> {
+            if (e instanceof CancellationException) {
+                //调用方等待超时，业务可能已开始执行，保留占位到过期
+                return;
+            }
+            if (e != null) {
+                abort(key);
+            } else {
+                record(key, payloadDigest, result);
+            }
+        });
+        return future;
+    }
+
+    private String buildKey(String action, long userId, String idempotencyKey) {
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, HEADER_NAME + " 过长");
+        }
+        return KEY_PREFIX + action + ":" + userId + ":" + idempotencyKey;
+    }
+
+    /**
+     * 请求参数摘要
+     * @param payload
+     * @return
+     */
+    private String digest(Object payload) {
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(payload));
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "请求参数错误");
+        }
+    }
+
+    /**
+     * 占位
+     * @param key
+     * @param payloadDigest 请求参数摘要
+     * @param pendingTtlMillis 占位的过期时间
+     * @return 首次请求（或 Redis 异常）返回 null，重试请求返回记录的结果
+     */
+    private String tryBegin(String key, String payloadDigest, long pendingTtlMillis) {
+        try {
+            Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(key, payloadDigest + SEPARATOR + PENDING,
+                    pendingTtlMillis, TimeUnit.MILLISECONDS);
+            if (Boolean.TRUE.equals(success)) {
+                return null;
+            }
+            String recorded = stringRedisTemplate.opsForValue().get(key);
+            if (recorded == null) {
+                //刚好过期或被删除，按首次请求处理
+                return tryBegin(key, payloadDigest, pendingTtlMillis);
+            }
+            if (!recorded.startsWith(payloadDigest + SEPARATOR)) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, HEADER_NAME + " 已用于其他请求");
+            }
+            recorded = recorded.substring(payloadDigest.length() + SEPARATOR.length());
+            if (PENDING.equals(recorded)) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "请求处理中，请勿重复提交");
+            }
+            return recorded;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("redis idempotency begin error", e);
+            return null;
+        }
+    }
+
+    private void record(String key, String payloadDigest, Object result) {
+        try {
+            stringRedisTemplate.opsForValue().set(key, payloadDigest + SEPARATOR + objectMapper.writeValueAsString(result),
+                    RESULT_TTL_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.error("redis idempotency record error", e);
+        }
+    }
+
+    private void abort(String key) {
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception e) {
+            log.error("redis idempotency abort error", e);
+        }
+    }
+
+    private <T> T parse(String recorded, Class<T> resultClass) {
+        try {
+            return objectMapper.readValue(recorded, resultClass);
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "幂等结果解析失败");
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.yupi.yupao.manager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带监控的分布式锁
+ * 1. 按锁的逻辑名称（如 join_team，不含 id）统计：等待时间、持有时间（直方图），竞争次数、超时次数
+ * 2. 指标通过 /actuator/metrics 查看：yupao.lock.wait、yupao.lock.hold、yupao.lock.contention、yupao.lock.timeout
+ */
+@Component
+public class LockManager {
+
+    @Resource
+    private RedissonClient redissonClient;
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> timerMap = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> counterMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取锁（每次加锁新建一个，不要跨线程共享）
+     * @param name 锁的逻辑名称，作为指标标签
+     * @param key Redis 中锁的 key
+     * @return
+     */
+    public InstrumentedLock getLock(String name, String key) {
+        return new InstrumentedLock(name, redissonClient.getLock(key), false);
+    }
+
+    /**
+     * 获取联锁，按传入顺序加锁
+     * @param name 锁的逻辑名称，作为指标标签
+     * @param keys Redis 中锁的 key
+     * @return
+     */
+    public InstrumentedLock getMultiLock(String name, String... keys) {
+        RLock[] locks = new RLock[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            locks[i] = redissonClient.getLock(keys[i]);
+        }
+        return new InstrumentedLock(name, redissonClient.getMultiLock(locks), true);
+    }
+
+    private Timer timer(String metric, String name, String result) {
+        return timerMap.computeIfAbsent(metric + ":" + name + ":" + result, key -> {
+            Timer.Builder builder = Timer.builder(metric).tag("lock", name)
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram();
+            if (result != null) {
+                builder.tag("result", result);
+            }
+            return builder.register(meterRegistry);
+        });
+    }
+
+    private Counter counter(String metric, String name) {
+        return counterMap.computeIfAbsent(metric + ":" + name,
+                key -> Counter.builder(metric).tag("lock", name).register(meterRegistry));
+    }
+
+    /**
+     * 带监控的锁
+     */
+    public class InstrumentedLock {
+
+        private final String name;
+
+        private final RLock lock;
+
+        /**
+         * 联锁不支持 isHeldByCurrentThread
+         */
+        private final boolean multi;
+
+        private boolean locked;
+
+        private long lockedAt;
+
+        private InstrumentedLock(String name, RLock lock, boolean multi) {
+            this.name = name;
+            this.lock = lock;
+            this.multi = multi;
+        }
+
+        /**
+         * 尝试加锁，先不等待尝试一次，失败记一次竞争后再等待
+         * @param waitTime 最长等待时间，0 表示不等待
+         * @param leaseTime 持有时间，-1 表示看门狗自动续期
+         * @param unit
+         * @return
+         * @throws InterruptedException
+         */
+        public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+            long start = System.nanoTime();
+            locked = lock.tryLock(0, leaseTime, unit);
+            if (!locked) {
+                counter("yupao.lock.contention", name).increment();
+                if (waitTime > 0) {
+                    locked = lock.tryLock(waitTime, leaseTime, unit);
+                }
+            }
+            long now = System.nanoTime();
+            timer("yupao.lock.wait", name, locked ? "acquired" : "timeout").record(now - start, TimeUnit.NANOSECONDS);
+            if (locked) {
+                lockedAt = now;
+            } else {
+                counter("yupao.lock.timeout", name).increment();
+            }
+            return locked;
+        }
+
+        /**
+         * 加锁成功时释放并记录持有时间，否则什么都不做（在 finally 中调用）
+         */
+        public void unlock() {
+            if (!locked) {
+                return;
+            }
+            locked = false;
+            timer("yupao.lock.hold", name, null).record(System.nanoTime() - lockedAt, TimeUnit.NANOSECONDS);
+            //只能释放自己的锁（看门狗失效导致锁已过期时不再释放）
+            if (multi || lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+}
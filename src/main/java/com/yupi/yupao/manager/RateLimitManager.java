@@ -0,0 +1,180 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.config.RateLimitProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateIntervalUnit;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式令牌桶限流
+ * 1. 全局令牌由 Redisson RRateLimiter 发放：yupao:rate_limit:{规则名}:{用户 id、会话 id 或 IP}
+ * 2. 本地快速路径：每次从 Redis 预取一批令牌（租约），租约内在本地扣减，不访问 Redis；租约到期未用完的令牌作废
+ * 3. 被拒绝后在一个令牌的生成间隔内直接本地拒绝，滥用的客户端不会打到 Redis
+ * 4. Redis 异常时放行
+ * 5. 本地桶数量有上限，超过后新的 key 不再缓存本地桶，直接从 Redis 取令牌
+ */
+@Component
+@Slf4j
+public class RateLimitManager {
+
+    private static final String KEY_PREFIX = "yupao:rate_limit:";
+
+    /**
+     * 每次预取的令牌数为每周期令牌数的 1/LEASE_DIVISOR（至少 1 个）
+     */
+    private static final long LEASE_DIVISOR = 10;
+
+    /**
+     * 租约有效期，多实例时未用完的令牌最多浪费这么久
+     */
+    private static final long LEASE_MILLIS = 1000;
+
+    /**
+     * 被拒绝后本地直接拒绝的最长时间
+     */
+    private static final long MAX_REJECT_MILLIS = 1000;
+
+    /**
+     * 本地桶闲置多久后清理
+     */
+    private static final long IDLE_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * 本地桶的最大数量，防止大量不同的 key（IP、伪造的会话 id）撑爆内存
+     */
+    private static final int MAX_BUCKET_NUM = 100000;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    private final Map<String, LocalBucket> bucketMap = new ConcurrentHashMap<>();
+
+    /**
+     * 尝试获取一个令牌
+     * @param ruleName 规则名称
+     * @param rule
+     * @param key 用户 id、会话 id 或 IP
+     * @return false 表示被限流
+     */
+    public boolean tryAcquire(String ruleName, RateLimitProperties.Rule rule, String key) {
+        String bucketKey = KEY_PREFIX + ruleName + ":" + key;
+        LocalBucket bucket = bucketMap.get(bucketKey);
+        if (bucket == null) {
+            if (bucketMap.size() >= MAX_BUCKET_NUM) {
+                return acquireDirectly(bucketKey, rule);
+            }
+            bucket = bucketMap.computeIfAbsent(bucketKey, k -> new LocalBucket());
+        }
+        long now = System.currentTimeMillis();
+        bucket.lastAccess = now;
+        if (bucket.tryTake(now)) {
+            return true;
+        }
+        if (now < bucket.rejectUntil) {
+            return false;
+        }
+        synchronized (bucket) {
+            if (bucket.tryTake(now)) {
+                return true;
+            }
+            return lease(bucketKey, bucket, rule, now);
+        }
+    }
+
+    /**
+     * 从 Redis 预取一批令牌，失败时退化为只取一个
+     */
+    private boolean lease(String bucketKey, LocalBucket bucket, RateLimitProperties.Rule rule, long now) {
+        try {
+            RRateLimiter rateLimiter = redissonClient.getRateLimiter(bucketKey);
+            if (!bucket.initialized) {
+                rateLimiter.trySetRate(RateType.OVERALL, rule.getPermits(), rule.getPeriodSeconds(), RateIntervalUnit.SECONDS);
+                bucket.initialized = true;
+            }
+            //闲置的限流器随之过期，访问时续期（异步，不等待结果）
+            rateLimiter.expireAsync(rule.getPeriodSeconds() * 2, TimeUnit.SECONDS);
+            long leaseSize = Math.max(1, rule.getPermits() / LEASE_DIVISOR);
+            if (rateLimiter.tryAcquire(leaseSize)) {
+                bucket.refill(leaseSize - 1, now + LEASE_MILLIS);
+                return true;
+            }
+            if (leaseSize > 1 && rateLimiter.tryAcquire(1)) {
+                return true;
+            }
+            //一个令牌的生成间隔
+            long intervalMillis = rule.getPeriodSeconds() * 1000 / Math.max(1, rule.getPermits());
+            bucket.rejectUntil = now + Math.min(intervalMillis, MAX_REJECT_MILLIS);
+            return false;
+        } catch (Exception e) {
+            log.error("redis rate limiter error, key: {}", bucketKey, e);
+            //可能是限流器已过期（速率配置丢失），下次重新设置
+            bucket.initialized = false;
+            return true;
+        }
+    }
+
+    /**
+     * 本地桶已满时直接从 Redis 取一个令牌
+     */
+    private boolean acquireDirectly(String bucketKey, RateLimitProperties.Rule rule) {
+        try {
+            RRateLimiter rateLimiter = redissonClient.getRateLimiter(bucketKey);
+            rateLimiter.trySetRate(RateType.OVERALL, rule.getPermits(), rule.getPeriodSeconds(), RateIntervalUnit.SECONDS);
+            rateLimiter.expireAsync(rule.getPeriodSeconds() * 2, TimeUnit.SECONDS);
+            return rateLimiter.tryAcquire(1);
+        } catch (Exception e) {
+            log.error("redis rate limiter error, key: {}", bucketKey, e);
+            return true;
+        }
+    }
+
+    /**
+     * 清理闲置的本地桶
+     */
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        bucketMap.entrySet().removeIf(entry -> now - entry.getValue().lastAccess > IDLE_MILLIS);
+    }
+
+    /**
+     * 本地租约
+     */
+    private static class LocalBucket {
+
+        private long tokens;
+
+        private long leaseExpireAt;
+
+        private volatile long rejectUntil;
+
+        private volatile long lastAccess;
+
+        /**
+         * Redis 中的速率是否已设置（trySetRate 只在首次设置时生效）
+         */
+        private volatile boolean initialized;
+
+        synchronized boolean tryTake(long now) {
+            if (tokens > 0 && now < leaseExpireAt) {
+                tokens--;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void refill(long tokens, long leaseExpireAt) {
+            this.tokens = tokens;
+            this.leaseExpireAt = leaseExpireAt;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.utlis.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 队伍过期延迟队列
+ * Redis ZSET，member 为队伍 id，score 为过期时间戳，定时取出到期的队伍解散，不需要扫表
+ */
+@Component
+@Slf4j
+public class TeamExpireQueue {
+
+    private static final String QUEUE_KEY = "yupao:team:expire:queue";
+
+    /**
+     * 存量队伍是否已导入队列的标记
+     */
+    private static final String SEEDED_KEY = "yupao:team:expire:seeded";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 加入队列，已存在时更新过期时间
+     * @param teamId
+     * @param expireTime 为空表示永不过期，从队列中移除
+     */
+    public void schedule(long teamId, Date expireTime) {
+        try {
+            if (expireTime == null) {
+                stringRedisTemplate.opsForZSet().remove(QUEUE_KEY, String.valueOf(teamId));
+                return;
+            }
+            stringRedisTemplate.opsForZSet().add(QUEUE_KEY, String.valueOf(teamId), expireTime.getTime());
+        } catch (Exception e) {
+            log.error("schedule team expire error, teamId: {}", teamId, e);
+        }
+    }
+
+    /**
+     * 批量加入队列（导入存量队伍）
+     * @param teamIdExpireTimeMap 队伍 id -> 过期时间
+     */
+    public void scheduleAll(Map<Long, Date> teamIdExpireTimeMap) {
+        if (teamIdExpireTimeMap.isEmpty()) {
+            return;
+        }
+        Set<ZSetOperations.TypedTuple<String>> tupleSet = teamIdExpireTimeMap.entrySet().stream()
+                .<ZSetOperations.TypedTuple<String>>map(entry -> new DefaultTypedTuple<>(
+                        String.valueOf(entry.getKey()), (double) entry.getValue().getTime()))
+                .collect(Collectors.toSet());
+        stringRedisTemplate.opsForZSet().add(QUEUE_KEY, tupleSet);
+    }
+
+    /**
+     * 从队列中移除
+     * @param teamIdList
+     */
+    public void remove(Collection<Long> teamIdList) {
+        if (teamIdList.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForZSet().remove(QUEUE_KEY, teamIdList.stream().map(String::valueOf).toArray());
+        } catch (Exception e) {
+            log.error("remove team expire error", e);
+        }
+    }
+
+    /**
+     * 事务提交后再从队列中移除，事务回滚时队伍仍留在队列里等待下次处理
+     * @param teamIdList
+     */
+    public void removeAfterCommit(Collection<Long> teamIdList) {
+        TransactionUtils.afterCommit(() -> remove(teamIdList));
+    }
+
+    /**
+     * 取出已到期的一批队伍 id（不会从队列中删除，处理完成后调用 remove）
+     * @param limit
+     * @return
+     */
+    public List<Long> pollDue(int limit) {
+        Set<String> memberSet = stringRedisTemplate.opsForZSet()
+                .rangeByScore(QUEUE_KEY, 0, System.currentTimeMillis(), 0, limit);
+        if (memberSet == null) {
+            return Collections.emptyList();
+        }
+        return memberSet.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    /**
+     * 抢占存量队伍导入权，只有第一次调用返回 true
+     * @return
+     */
+    public boolean tryMarkSeeded() {
+        Boolean result = stringRedisTemplate.opsForValue().setIfAbsent(SEEDED_KEY, "1", 3650, TimeUnit.DAYS);
+        return Boolean.TRUE.equals(result);
+    }
+}
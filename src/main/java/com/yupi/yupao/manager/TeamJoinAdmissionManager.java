@@ -0,0 +1,230 @@
+package com.yupi.yupao.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.yupi.yupao.mapper.TeamMapper;
+import com.yupi.yupao.model.domain.Team;
+import com.yupi.yupao.utlis.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 加入队伍的 Redis 原子准入（join-mode = lua）
+ * 1. 用户已加入的队伍集合复用 {@link UserJoinTeamManager}，队伍已加入人数：yupao:team:member:{teamId}
+ * 2. 一个脚本内完成重复加入、用户加入上限、队伍容量的校验和占位，一次往返
+ * 3. Redis 只做准入，数据库仍按 memberCount < maxNum 条件更新兜底；写库失败时释放占位
+ * 4. 人数计数短时间过期，过期后从数据库重新加载，累积的偏差会自动修正
+ */
+@Component
+@Slf4j
+public class TeamJoinAdmissionManager {
+
+    /**
+     * 准入成功
+     */
+    public static final long ADMITTED = 0;
+
+    /**
+     * 已加入该队伍
+     */
+    public static final long DUPLICATE = 1;
+
+    /**
+     * 已达到用户加入队伍上限
+     */
+    public static final long USER_LIMIT = 2;
+
+    /**
+     * 队伍已满
+     */
+    public static final long TEAM_FULL = 3;
+
+    /**
+     * 重试后集合或计数仍未加载（刚加载就过期、被淘汰），无法准入，由调用方改走数据库
+     */
+    public static final long NOT_LOADED = 4;
+
+    /**
+     * 用户集合未加载
+     */
+    private static final long USER_NOT_LOADED = -1;
+
+    /**
+     * 队伍人数未加载
+     */
+    private static final long TEAM_NOT_LOADED = -2;
+
+    private static final String MEMBER_KEY_PREFIX = "yupao:team:member:";
+
+    private static final long MEMBER_TTL_MINUTES = 10;
+
+    /**
+     * 清除所有人数计数时每批扫描、删除的数量
+     */
+    private static final int EVICT_BATCH_SIZE = 1000;
+
+    /**
+     * KEYS[1] 用户已加入的队伍集合（含一个占位成员），KEYS[2] 队伍已加入人数
+     * ARGV[1] 队伍 id，ARGV[2] 用户最多加入的队伍数，ARGV[3] 队伍最大人数
+     */
+    private static final DefaultRedisScript<Long> ADMIT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+                    "if redis.call('EXISTS', KEYS[2]) == 0 then return -2 end " +
+                    "if redis.call('SISMEMBER', KEYS[1], ARGV[1]) == 1 then return 1 end " +
+                    "if redis.call('SCARD', KEYS[1]) - 1 >= tonumber(ARGV[2]) then return 2 end " +
+                    "if tonumber(redis.call('GET', KEYS[2])) >= tonumber(ARGV[3]) then return 3 end " +
+                    "redis.call('INCR', KEYS[2]) " +
+                    "redis.call('SADD', KEYS[1], ARGV[1]) " +
+                    "return 0", Long.class);
+
+    /**
+     * 释放占位：移出用户集合，队伍人数 -1（不存在时不创建）
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then redis.call('SREM', KEYS[1], ARGV[1]) end " +
+                    "if tonumber(redis.call('GET', KEYS[2]) or '0') > 0 then redis.call('DECR', KEYS[2]) end " +
+                    "return 0", Long.class);
+
+    /**
+     * 队伍人数 -1（不存在时不创建）
+     */
+    private static final DefaultRedisScript<Long> DECR_SCRIPT = new DefaultRedisScript<>(
+            "if tonumber(redis.call('GET', KEYS[1]) or '0') > 0 then return redis.call('DECR', KEYS[1]) end " +
+                    "return 0", Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private UserJoinTeamManager userJoinTeamManager;
+    @Resource
+    private TeamMapper teamMapper;
+
+    /**
+     * 尝试占用一个名额
+     * @param userId
+     * @param team
+     * @param maxJoinTeamNum 用户最多加入的队伍数
+     * @return ADMITTED、DUPLICATE、USER_LIMIT、TEAM_FULL、NOT_LOADED 之一
+     */
+    public long tryAdmit(long userId, Team team, int maxJoinTeamNum) {
+        long teamId = team.getId();
+        List<String> keyList = Arrays.asList(userJoinTeamManager.getKey(userId), getMemberKey(teamId));
+        long result = USER_NOT_LOADED;
+        //集合或计数不存在时加载后重试（两者都可能未加载，最多执行三次）
+        for (int i = 0; i < 3; i++) {
+            result = stringRedisTemplate.execute(ADMIT_SCRIPT, keyList,
+                    String.valueOf(teamId), String.valueOf(maxJoinTeamNum), String.valueOf(Optional.ofNullable(team.getMaxNum()).orElse(0)));
+            if (result == USER_NOT_LOADED) {
+                userJoinTeamManager.ensureLoaded(userId);
+            } else if (result == TEAM_NOT_LOADED) {
+                loadMemberCount(teamId);
+            } else {
+                return result;
+            }
+        }
+        //仍未加载（刚好过期），没有占位，交给调用方处理
+        log.warn("team join admission not loaded, userId: {}, teamId: {}, result: {}", userId, teamId, result);
+        return NOT_LOADED;
+    }
+
+    /**
+     * 写库失败时释放占用的名额
+     * @param userId
+     * @param teamId
+     */
+    public void release(long userId, long teamId) {
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT,
+                    Arrays.asList(userJoinTeamManager.getKey(userId), getMemberKey(teamId)), String.valueOf(teamId));
+        } catch (Exception e) {
+            log.error("redis release team join admission error", e);
+        }
+    }
+
+    /**
+     * 退出队伍后调用，队伍人数 -1（事务提交后生效）
+     * @param teamId
+     */
+    public void decrMemberCount(long teamId) {
+        TransactionUtils.afterCommit(() -> {
+            try {
+                //用户集合由 UserJoinTeamManager 维护
+                stringRedisTemplate.execute(DECR_SCRIPT, Collections.singletonList(getMemberKey(teamId)));
+            } catch (Exception e) {
+                log.error("redis decr team member count error", e);
+            }
+        });
+    }
+
+    /**
+     * 队伍解散后调用，清除人数计数（事务提交后生效）
+     * @param teamIdList
+     */
+    public void evict(Collection<Long> teamIdList) {
+        if (teamIdList.isEmpty()) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> {
+            try {
+                stringRedisTemplate.delete(teamIdList.stream().map(this::getMemberKey).collect(Collectors.toList()));
+            } catch (Exception e) {
+                log.error("redis evict team member count error", e);
+            }
+        });
+    }
+
+    /**
+     * 清除所有队伍的人数计数（memberCount 对账修正后调用），之后按数据库重新加载
+     * 用 SCAN 分批删除，不阻塞 Redis
+     */
+    public void evictAll() {
+        try {
+            stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+                ScanOptions scanOptions = ScanOptions.scanOptions().match(MEMBER_KEY_PREFIX + "*").count(EVICT_BATCH_SIZE).build();
+                List<byte[]> keyList = new ArrayList<>();
+                try (Cursor<byte[]> cursor = connection.scan(scanOptions)) {
+                    while (cursor.hasNext()) {
+                        keyList.add(cursor.next());
+                        if (keyList.size() >= EVICT_BATCH_SIZE) {
+                            connection.del(keyList.toArray(new byte[0][]));
+                            keyList.clear();
+                        }
+                    }
+                }
+                if (!keyList.isEmpty()) {
+                    connection.del(keyList.toArray(new byte[0][]));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("redis evict all team member count error", e);
+        }
+    }
+
+    private void loadMemberCount(long teamId) {
+        QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("memberCount").eq("id", teamId);
+        Team team = teamMapper.selectOne(queryWrapper);
+        int memberCount = team == null ? 0 : Optional.ofNullable(team.getMemberCount()).orElse(0);
+        stringRedisTemplate.opsForValue().setIfAbsent(getMemberKey(teamId), String.valueOf(memberCount),
+                MEMBER_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private String getMemberKey(long teamId) {
+        return MEMBER_KEY_PREFIX + teamId;
+    }
+}
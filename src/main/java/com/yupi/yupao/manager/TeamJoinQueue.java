@@ -0,0 +1,192 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.common.ErrorCode;
+import com.yupi.yupao.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * 按队伍排队加入（join-mode = queue，热门队伍集中加入的场景）
+ * 1. 同一队伍的加入请求进入同一个队列，同一时刻只有一个线程处理（单写者），不同队伍并行
+ * 2. 处理线程每次取出一批请求，交给批量加入方法在一个事务里完成，结果通过 CompletableFuture 通知调用方
+ * 3. 多实例部署时批量加入方法锁定队伍行，数据库保证正确性
+ */
+@Component
+@Slf4j
+public class TeamJoinQueue {
+
+    /**
+     * 每批最多处理的请求数
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * 单个队伍最多排队的请求数，超过直接拒绝
+     */
+    private static final int MAX_PENDING_PER_TEAM = 10000;
+
+    private static final int WORKER_NUM = 4;
+
+    private final Map<Long, TeamQueue> teamQueueMap = new ConcurrentHashMap<>();
+
+    private final ExecutorService executorService = new ThreadPoolExecutor(WORKER_NUM, WORKER_NUM,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new JoinThreadFactory());
+
+    /**
+     * 提交加入请求
+     * @param teamId
+     * @param userId
+     * @param batchJoiner 批量加入：(队伍 id, 用户 id 列表) -> 加入失败的用户及原因，成功的用户不在结果中
+     * @return 加入成功时完成，失败时以 BusinessException 异常完成；调用方超时后可取消
+     */
+    public CompletableFuture<Boolean> submit(long teamId, long userId,
+                                             BiFunction<Long, List<Long>, Map<Long, BusinessException>> batchJoiner) {
+        TeamQueue teamQueue = teamQueueMap.computeIfAbsent(teamId, key -> new TeamQueue(teamId, batchJoiner));
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        if (teamQueue.size.incrementAndGet() > MAX_PENDING_PER_TEAM) {
+            teamQueue.size.decrementAndGet();
+            future.completeExceptionally(new BusinessException(ErrorCode.SYSTEM_ERROR, "加入队伍的人太多，请稍后重试"));
+            return future;
+        }
+        teamQueue.taskQueue.add(new JoinTask(userId, future));
+        trySchedule(teamQueue);
+        return future;
+    }
+
+    private void trySchedule(TeamQueue teamQueue) {
+        if (teamQueue.draining.compareAndSet(false, true)) {
+            executorService.execute(() -> drain(teamQueue));
+        }
+    }
+
+    private void drain(TeamQueue teamQueue) {
+        try {
+            while (true) {
+                List<JoinTask> taskList = pollBatch(teamQueue);
+                if (taskList.isEmpty()) {
+                    break;
+                }
+                joinBatch(teamQueue, taskList);
+            }
+        } finally {
+            teamQueue.draining.set(false);
+            //处理结束前刚好有新的请求入队，重新调度；否则移除空队列
+            if (!teamQueue.taskQueue.isEmpty()) {
+                trySchedule(teamQueue);
+            } else {
+                teamQueueMap.remove(teamQueue.teamId, teamQueue);
+                if (!teamQueue.taskQueue.isEmpty()) {
+                    trySchedule(teamQueue);
+                }
+            }
+        }
+    }
+
+    private List<JoinTask> pollBatch(TeamQueue teamQueue) {
+        List<JoinTask> taskList = new ArrayList<>();
+        JoinTask task;
+        while (taskList.size() < BATCH_SIZE && (task = teamQueue.taskQueue.poll()) != null) {
+            teamQueue.size.decrementAndGet();
+            //调用方已超时取消的不再处理
+            if (!task.future.isDone()) {
+                taskList.add(task);
+            }
+        }
+        return taskList;
+    }
+
+    private void joinBatch(TeamQueue teamQueue, List<JoinTask> taskList) {
+        //同一用户在一批中重复提交时只处理一次，结果相同
+        Map<Long, List<JoinTask>> userTaskMap = new LinkedHashMap<>();
+        for (JoinTask task : taskList) {
+            userTaskMap.computeIfAbsent(task.userId, key -> new ArrayList<>()).add(task);
+        }
+        Map<Long, BusinessException> failMap;
+        try {
+            failMap = teamQueue.batchJoiner.apply(teamQueue.teamId, new ArrayList<>(userTaskMap.keySet()));
+        } catch (Exception e) {
+            log.error("team join batch error, teamId: {}", teamQueue.teamId, e);
+            RuntimeException exception = e instanceof BusinessException ? (BusinessException) e
+                    : new BusinessException(ErrorCode.SYSTEM_ERROR, "加入失败");
+            taskList.forEach(task -> task.future.completeExceptionally(exception));
+            return;
+        }
+        for (Map.Entry<Long, List<JoinTask>> entry : userTaskMap.entrySet()) {
+            BusinessException exception = failMap.get(entry.getKey());
+            for (JoinTask task : entry.getValue()) {
+                if (exception == null) {
+                    task.future.complete(true);
+                } else {
+                    task.future.completeExceptionally(exception);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    private static class TeamQueue {
+
+        private final long teamId;
+
+        private final BiFunction<Long, List<Long>, Map<Long, BusinessException>> batchJoiner;
+
+        private final ConcurrentLinkedQueue<JoinTask> taskQueue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * 是否有线程正在处理，保证单写者
+         */
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+
+        TeamQueue(long teamId, BiFunction<Long, List<Long>, Map<Long, BusinessException>> batchJoiner) {
+            this.teamId = teamId;
+            this.batchJoiner = batchJoiner;
+        }
+    }
+
+    private static class JoinTask {
+
+        private final long userId;
+
+        private final CompletableFuture<Boolean> future;
+
+        JoinTask(long userId, CompletableFuture<Boolean> future) {
+            this.userId = userId;
+            this.future = future;
+        }
+    }
+
+    private static class JoinThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNum = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "team-join-" + threadNum.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
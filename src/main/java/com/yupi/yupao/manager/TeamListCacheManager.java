@@ -0,0 +1,170 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.enums.TeamStatusEnum;
+import com.yupi.yupao.model.dto.TeamQuery;
+import com.yupi.yupao.model.vo.TeamUserVO;
+import com.yupi.yupao.utlis.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队伍列表结果缓存
+ * 1. 缓存 key = 全局版本号 + 规范化后的查询条件，任何队伍写操作都会递增版本号，旧版本的缓存自然失效
+ * 2. 缓存的是与用户无关的结果，hasJoin 等个人字段由调用方在读取后再覆盖
+ */
+@Component
+@Slf4j
+public class TeamListCacheManager {
+
+    private static final String VERSION_KEY = "yupao:team:list:version";
+
+    private static final String CACHE_KEY_PREFIX = "yupao:team:list:";
+
+    /**
+     * 缓存过期时间（分钟），兜底过期队伍的展示时长
+     */
+    private static final long CACHE_TTL_MINUTES = 5;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 当前队伍列表版本号
+     * @return
+     */
+    public long getVersion() {
+        String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    /**
+     * 递增版本号，在事务中调用时等事务提交后再递增，避免读到未提交的旧数据后写进新版本
+     */
+    public void bumpVersion() {
+        TransactionUtils.afterCommit(this::doBumpVersion);
+    }
+
+    /**
+     * 队伍列表的 ETag，版本号、查询条件、当前用户都相同时结果相同（hasJoin 与用户有关）
+     * @param queryKey
+     * @param userId 未登录为 null
+     * @return Redis 异常时返回 null（不做条件请求）
+     */
+    public String buildETag(String queryKey, Long userId) {
+        try {
+            return "team-list-" + getVersion() + "-" + userId + "-" + queryKey;
+        } catch (Exception e) {
+            log.error("redis get team list version error", e);
+            return null;
+        }
+    }
+
+    /**
+     * 单个队伍的 ETag，任何队伍写操作都会递增版本号，版本号不变时队伍信息不变
+     * @param teamId
+     * @return Redis 异常时返回 null（不做条件请求）
+     */
+    public String buildTeamETag(long teamId) {
+        try {
+            return "team-" + teamId + "-" + getVersion();
+        } catch (Exception e) {
+            log.error("redis get team list version error", e);
+            return null;
+        }
+    }
+
+    private void doBumpVersion() {
+        try {
+            stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        } catch (Exception e) {
+            log.error("bump team list version error", e);
+        }
+    }
+
+    /**
+     * 读取缓存
+     * @param version
+     * @param queryKey
+     * @return 未命中返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public List<TeamUserVO> get(long version, String queryKey) {
+        return (List<TeamUserVO>) redisTemplate.opsForValue().get(CACHE_KEY_PREFIX + version + ":" + queryKey);
+    }
+
+    /**
+     * 写入缓存
+     * @param version
+     * @param queryKey
+     * @param teamList
+     */
+    public void put(long version, String queryKey, List<TeamUserVO> teamList) {
+        redisTemplate.opsForValue().set(CACHE_KEY_PREFIX + version + ":" + queryKey, teamList, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 规范化查询条件，语义相同的查询得到相同的 key
+     * @param teamQuery
+     * @param isAdmin
+     * @return
+     */
+    public String buildQueryKey(TeamQuery teamQuery, boolean isAdmin) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("admin=").append(isAdmin);
+        if (teamQuery != null) {
+            Long id = teamQuery.getId();
+            if (id != null && id > 0) {
+                sb.append("&id=").append(id);
+            }
+            List<Long> idList = teamQuery.getIdList();
+            if (idList != null && !idList.isEmpty()) {
+                sb.append("&idList=").append(new TreeSet<>(idList));
+            }
+            appendText(sb, "searchText", teamQuery.getSearchText());
+            appendText(sb, "name", teamQuery.getName());
+            appendText(sb, "description", teamQuery.getDescription());
+            Integer maxNum = teamQuery.getMaxNum();
+            if (maxNum != null && maxNum > 0) {
+                sb.append("&maxNum=").append(maxNum);
+            }
+            if (teamQuery.getUserId() != null) {
+                sb.append("&userId=").append(teamQuery.getUserId());
+            }
+            TeamStatusEnum statusEnum = TeamStatusEnum.getEnumByValue(teamQuery.getStatus());
+            if (statusEnum == null) {
+                statusEnum = TeamStatusEnum.PUBLIC;
+            }
+            sb.append("&status=").append(statusEnum.getValue());
+            sb.append("&pageNum=").append(teamQuery.getPageNum());
+            sb.append("&pageSize=").append(teamQuery.getPageSize());
+            if (StringUtils.isNotBlank(teamQuery.getFields())) {
+                TreeSet<String> fieldSet = new TreeSet<>();
+                for (String field : teamQuery.getFields().split(",")) {
+                    if (StringUtils.isNotBlank(field)) {
+                        fieldSet.add(field.trim());
+                    }
+                }
+                sb.append("&fields=").append(fieldSet);
+            }
+        }
+        return DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void appendText(StringBuilder sb, String name, String value) {
+        if (StringUtils.isNotBlank(value)) {
+            sb.append('&').append(name).append('=').append(value);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.yupi.yupao.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.yupi.yupao.mapper.TeamMapper;
+import com.yupi.yupao.model.domain.Team;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 队伍名称、描述的内存倒排索引
+ * 1. 分词：按字符切分 1-gram 和 2-gram，中文不需要词典也能检索
+ * 2. 查询：查询词的所有 gram 都命中才算匹配（等价于子串匹配的近似），按命中次数打分，名称命中权重更高
+ * 3. 队伍写操作时增量更新，并把队伍 id 写入 Redis 变更记录，其他实例定时拉取变更记录后回表更新
+ * 4. 定时全量重建兜底；重建期间的增量更新先记下，替换后补做，避免被重建前加载的数据覆盖
+ * 5. 查询词没有可用的 gram（如空格分隔的单个字符）时调用方回退到数据库模糊查询
+ */
+@Component
+@Slf4j
+public class TeamSearchIndex {
+
+    /**
+     * 名称命中的权重
+     */
+    private static final int NAME_WEIGHT = 3;
+
+    /**
+     * 描述命中的权重
+     */
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+
+    /**
+     * 变更记录：ZSET，成员为队伍 id，分数为变更时间
+     */
+    private static final String CHANGE_LOG_KEY = "yupao:team:search:changes";
+
+    /**
+     * 变更记录保留的时间，需要大于全量重建的周期
+     */
+    private static final long CHANGE_LOG_RETAIN_MILLIS = 30 * 60 * 1000;
+
+    /**
+     * 拉取变更记录时往前多取的时间，容忍实例间的时钟偏差
+     */
+    private static final long CHANGE_LOG_SKEW_MILLIS = 5 * 1000;
+
+    @Resource
+    private TeamMapper teamMapper;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * gram -> (队伍 id -> 权重)
+     */
+    private volatile Map<String, Map<Long, Integer>> invertedIndex = new ConcurrentHashMap<>();
+
+    /**
+     * 队伍 id -> 该队伍写入的所有 gram，用于更新和删除
+     */
+    private volatile Map<Long, Set<String>> teamGramMap = new ConcurrentHashMap<>();
+
+    /**
+     * 是否已完成首次构建，未完成前调用方应回退到数据库模糊查询
+     */
+    private volatile boolean ready = false;
+
+    /**
+     * 全量重建期间的增量更新（队伍 id -> 最新的队伍，删除时为 null），替换后补做
+     */
+    private volatile Map<Long, Optional<Team>> pending;
+
+    /**
+     * 上次拉取到的变更时间
+     */
+    private volatile long lastSyncAt = System.currentTimeMillis();
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 查询词能否走索引（有可用的 gram）
+     * @param searchText
+     * @return
+     */
+    public boolean isSearchable(String searchText) {
+        return !queryGrams(searchText).isEmpty();
+    }
+
+    /**
+     * 搜索
+     * @param searchText
+     * @param limit 最多返回的队伍数
+     * @return 按相关度从高到低排序的队伍 id
+     */
+    public List<Long> search(String searchText, int limit) {
+        Set<String> queryGramSet = queryGrams(searchText);
+        if (queryGramSet.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, Map<Long, Integer>> index = invertedIndex;
+        //先取倒排列表最短的 gram 作为候选集
+        List<Map<Long, Integer>> postingList = new ArrayList<>();
+        for (String gram : queryGramSet) {
+            Map<Long, Integer> posting = index.get(gram);
+            if (posting == null || posting.isEmpty()) {
+                return Collections.emptyList();
+            }
+            postingList.add(posting);
+        }
+        postingList.sort((a, b) -> a.size() - b.size());
+        Map<Long, Integer> scoreMap = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : postingList.get(0).entrySet()) {
+            Long teamId = entry.getKey();
+            int score = entry.getValue();
+            boolean matchAll = true;
+            for (int i = 1; i < postingList.size(); i++) {
+                Integer weight = postingList.get(i).get(teamId);
+                if (weight == null) {
+                    matchAll = false;
+                    break;
+                }
+                score += weight;
+            }
+            if (matchAll) {
+                scoreMap.put(teamId, score);
+            }
+        }
+        return scoreMap.entrySet().stream()
+                .sorted((a, b) -> a.getValue().equals(b.getValue())
+                        ? Long.compare(b.getKey(), a.getKey()) : b.getValue() - a.getValue())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 新增或更新队伍（本实例的写操作，同时写入变更记录）
+     * @param team 需要包含 id、name、description
+     */
+    public void put(Team team) {
+        if (team == null || team.getId() == null) {
+            return;
+        }
+        apply(team.getId(), team);
+        recordChange(team.getId());
+    }
+
+    /**
+     * 删除队伍（本实例的写操作，同时写入变更记录）
+     * @param teamId
+     */
+    public void remove(Long teamId) {
+        apply(teamId, null);
+        recordChange(teamId);
+    }
+
+    /**
+     * 拉取其他实例写入的变更记录，回表后更新索引
+     */
+    public void syncChanges() {
+        long now = System.currentTimeMillis();
+        Set<String> memberSet = stringRedisTemplate.opsForZSet().rangeByScore(CHANGE_LOG_KEY, lastSyncAt - CHANGE_LOG_SKEW_MILLIS, now);
+        lastSyncAt = now;
+        stringRedisTemplate.opsForZSet().removeRangeByScore(CHANGE_LOG_KEY, 0, now - CHANGE_LOG_RETAIN_MILLIS);
+        if (memberSet == null || memberSet.isEmpty()) {
+            return;
+        }
+        List<Long> teamIdList = memberSet.stream().map(Long::valueOf).collect(Collectors.toList());
+        QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "name", "description").in("id", teamIdList);
+        Map<Long, Team> teamMap = teamMapper.selectList(queryWrapper).stream()
+                .collect(Collectors.toMap(Team::getId, team -> team));
+        //已删除的队伍查不到，从索引中删除
+        for (Long teamId : teamIdList) {
+            apply(teamId, teamMap.get(teamId));
+        }
+    }
+
+    /**
+     * 更新本地索引
+     * @param teamId
+     * @param team 为 null 时删除
+     */
+    private void apply(Long teamId, Team team) {
+        //先记下再更新：读到 pending 已清空时，读到的索引一定是重建后的
+        Map<Long, Optional<Team>> currentPending = pending;
+        if (currentPending != null) {
+            currentPending.put(teamId, Optional.ofNullable(team));
+        }
+        Map<String, Map<Long, Integer>> index = invertedIndex;
+        Map<Long, Set<String>> gramMap = teamGramMap;
+        Set<String> oldGramSet = gramMap.remove(teamId);
+        if (oldGramSet != null) {
+            for (String gram : oldGramSet) {
+                Map<Long, Integer> posting = index.get(gram);
+                if (posting != null) {
+                    posting.remove(teamId);
+                }
+            }
+        }
+        if (team == null) {
+            return;
+        }
+        Map<String, Integer> gramWeightMap = documentGrams(team.getName(), team.getDescription());
+        for (Map.Entry<String, Integer> entry : gramWeightMap.entrySet()) {
+            index.computeIfAbsent(entry.getKey(), key -> new ConcurrentHashMap<>()).put(teamId, entry.getValue());
+        }
+        gramMap.put(teamId, gramWeightMap.keySet());
+    }
+
+    private void recordChange(Long teamId) {
+        try {
+            stringRedisTemplate.opsForZSet().add(CHANGE_LOG_KEY, String.valueOf(teamId), System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("redis record team search change error", e);
+        }
+    }
+
+    /**
+     * 从数据库全量重建，构建完成后整体替换
+     */
+    public void rebuild() {
+        Map<Long, Optional<Team>> currentPending = new ConcurrentHashMap<>();
+        pending = currentPending;
+        Map<String, Map<Long, Integer>> newIndex = new ConcurrentHashMap<>();
+        Map<Long, Set<String>> newTeamGramMap = new ConcurrentHashMap<>();
+        long lastId = 0;
+        while (true) {
+            QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id", "name", "description").gt("id", lastId).orderByAsc("id").last("limit " + LOAD_PAGE_SIZE);
+            List<Team> teamList = teamMapper.selectList(queryWrapper);
+            for (Team team : teamList) {
+                Map<String, Integer> gramWeightMap = documentGrams(team.getName(), team.getDescription());
+                for (Map.Entry<String, Integer> entry : gramWeightMap.entrySet()) {
+                    newIndex.computeIfAbsent(entry.getKey(), key -> new ConcurrentHashMap<>()).put(team.getId(), entry.getValue());
+                }
+                newTeamGramMap.put(team.getId(), gramWeightMap.keySet());
+                lastId = team.getId();
+            }
+            if (teamList.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+        }
+        invertedIndex = newIndex;
+        teamGramMap = newTeamGramMap;
+        pending = null;
+        //补做重建期间的增量更新
+        for (Map.Entry<Long, Optional<Team>> entry : currentPending.entrySet()) {
+            apply(entry.getKey(), entry.getValue().orElse(null));
+        }
+        ready = true;
+    }
+
+    /**
+     * 文档分词：名称、描述的 1-gram 和 2-gram 及其权重
+     */
+    private Map<String, Integer> documentGrams(String name, String description) {
+        Map<String, Integer> gramWeightMap = new HashMap<>();
+        for (String gram : grams(name, true)) {
+            gramWeightMap.merge(gram, NAME_WEIGHT, Integer::sum);
+        }
+        for (String gram : grams(description, true)) {
+            gramWeightMap.merge(gram, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+        return gramWeightMap;
+    }
+
+    /**
+     * 查询分词：只有一个字符时用 1-gram，否则只用 2-gram
+     */
+    private Set<String> queryGrams(String searchText) {
+        String text = normalize(searchText);
+        if (text.length() == 1) {
+            return Collections.singleton(text);
+        }
+        return grams(text, false);
+    }
+
+    private Set<String> grams(String text, boolean withUnigram) {
+        Set<String> gramSet = new LinkedHashSet<>();
+        String normalized = normalize(text);
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (withUnigram) {
+                gramSet.add(String.valueOf(c));
+            }
+            if (i + 1 < normalized.length() && !Character.isWhitespace(normalized.charAt(i + 1))) {
+                gramSet.add(normalized.substring(i, i + 2));
+            }
+        }
+        return gramSet;
+    }
+
+    private String normalize(String text) {
+        return StringUtils.isBlank(text) ? "" : text.trim().toLowerCase();
+    }
+}
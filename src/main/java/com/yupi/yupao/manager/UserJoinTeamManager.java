@@ -0,0 +1,248 @@
+package com.yupi.yupao.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.yupi.yupao.mapper.UserTeamMapper;
+import com.yupi.yupao.model.domain.UserTeam;
+import com.yupi.yupao.utlis.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 用户已加入的队伍集合
+ * 1. Redis SET：yupao:user:join:{userId}，成员为队伍 id，另有一个占位成员 0 表示集合已从数据库加载（空集合也能缓存）
+ * 2. 本地镜像：短时间有效，命中时判断 hasJoin 不需要访问 Redis
+ * 3. 加入、退出、解散时在事务提交后增量维护；集合不存在时不写入，下次读取时再从数据库加载
+ * 4. 每次维护都递增版本号 yupao:user:join:ver:{userId}，从数据库加载前后版本号不一致时不写入集合
+ *    （加载期间有事务提交，读到的可能是提交前的数据，而提交后的增量维护因集合不存在被跳过）
+ */
+@Component
+@Slf4j
+public class UserJoinTeamManager {
+
+    private static final String KEY_PREFIX = "yupao:user:join:";
+
+    private static final String VERSION_KEY_PREFIX = "yupao:user:join:ver:";
+
+    /**
+     * 占位成员，表示集合已加载
+     */
+    private static final String LOADED_MEMBER = "0";
+
+    private static final long REDIS_TTL_MINUTES = 60;
+
+    /**
+     * 本地镜像有效期
+     */
+    private static final long LOCAL_TTL_MILLIS = 30 * 1000;
+
+    /**
+     * 本地镜像最多缓存的用户数，超过后清空
+     */
+    private static final int LOCAL_MAX_SIZE = 10000;
+
+    /**
+     * 从数据库加载时版本号不一致的最多重试次数
+     */
+    private static final int LOAD_MAX_TRIES = 3;
+
+    /**
+     * 递增版本号，集合存在时才增删成员
+     */
+    private static final DefaultRedisScript<Long> UPDATE_IF_EXISTS_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[2]) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[3]) " +
+                    "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end " +
+                    "return redis.call(ARGV[1], KEYS[1], ARGV[2])", Long.class);
+
+    /**
+     * 递增版本号并删除集合
+     */
+    private static final DefaultRedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[2]) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[1]) " +
+                    "return redis.call('DEL', KEYS[1])", Long.class);
+
+    /**
+     * 版本号与加载前读到的一致、且集合不存在时才写入
+     * 返回 1 表示已写入或集合已存在，0 表示版本号已变化
+     */
+    private static final DefaultRedisScript<Long> SAVE_IF_UNCHANGED_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then return 0 end " +
+                    "if redis.call('EXISTS', KEYS[1]) == 1 then return 1 end " +
+                    "redis.call('SADD', KEYS[1], unpack(ARGV, 3)) " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+                    "return 1", Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private UserTeamMapper userTeamMapper;
+
+    private final Map<Long, LocalEntry> localMirror = new ConcurrentHashMap<>();
+
+    /**
+     * 用户已加入的队伍 id
+     * @param userId
+     * @return
+     */
+    public Set<Long> getJoinTeamIds(long userId) {
+        LocalEntry localEntry = localMirror.get(userId);
+        if (localEntry != null && localEntry.expireAt > System.currentTimeMillis()) {
+            return localEntry.teamIdSet;
+        }
+        Set<Long> teamIdSet;
+        try {
+            teamIdSet = loadFromRedis(userId);
+        } catch (Exception e) {
+            log.error("redis get user join teams error", e);
+            return loadFromDb(userId);
+        }
+        if (localMirror.size() >= LOCAL_MAX_SIZE) {
+            localMirror.clear();
+        }
+        localMirror.put(userId, new LocalEntry(teamIdSet, System.currentTimeMillis() + LOCAL_TTL_MILLIS));
+        return teamIdSet;
+    }
+
+    /**
+     * 确保 Redis 中已加载用户的集合（原子脚本依赖集合已加载）
+     * @param userId
+     */
+    public void ensureLoaded(long userId) {
+        loadFromRedis(userId);
+    }
+
+    /**
+     * Redis 中集合的 key
+     * @param userId
+     * @return
+     */
+    public String getKey(long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    /**
+     * 加入队伍后调用（事务提交后生效）
+     * @param userId
+     * @param teamId
+     */
+    public void addJoin(long userId, long teamId) {
+        TransactionUtils.afterCommit(() -> updateIfExists(userId, "SADD", teamId));
+    }
+
+    /**
+     * 退出队伍后调用（事务提交后生效）
+     * @param userId
+     * @param teamId
+     */
+    public void removeJoin(long userId, long teamId) {
+        TransactionUtils.afterCommit(() -> updateIfExists(userId, "SREM", teamId));
+    }
+
+    /**
+     * 队伍解散后调用，批量移除所有成员集合中的该队伍（事务提交后生效）
+     * @param userIdList
+     * @param teamId
+     */
+    public void removeJoin(Collection<Long> userIdList, long teamId) {
+        TransactionUtils.afterCommit(() -> userIdList.forEach(userId -> updateIfExists(userId, "SREM", teamId)));
+    }
+
+    /**
+     * 清除用户的集合，下次读取时从数据库重新加载（事务提交后生效）
+     * @param userIdList
+     */
+    public void evict(Collection<Long> userIdList) {
+        TransactionUtils.afterCommit(() -> {
+            String ttlSeconds = String.valueOf(TimeUnit.MINUTES.toSeconds(REDIS_TTL_MINUTES));
+            for (Long userId : userIdList) {
+                localMirror.remove(userId);
+                try {
+                    stringRedisTemplate.execute(EVICT_SCRIPT, Arrays.asList(getKey(userId), getVersionKey(userId)), ttlSeconds);
+                } catch (Exception e) {
+                    log.error("redis evict user join teams error", e);
+                }
+            }
+        });
+    }
+
+    private void updateIfExists(long userId, String command, long teamId) {
+        localMirror.remove(userId);
+        try {
+            stringRedisTemplate.execute(UPDATE_IF_EXISTS_SCRIPT, Arrays.asList(getKey(userId), getVersionKey(userId)),
+                    command, String.valueOf(teamId), String.valueOf(TimeUnit.MINUTES.toSeconds(REDIS_TTL_MINUTES)));
+        } catch (Exception e) {
+            log.error("redis update user join teams error", e);
+        }
+    }
+
+    private Set<Long> loadFromRedis(long userId) {
+        String key = getKey(userId);
+        Set<Long> teamIdSet = null;
+        for (int i = 0; i < LOAD_MAX_TRIES; i++) {
+            Set<String> memberSet = stringRedisTemplate.opsForSet().members(key);
+            if (memberSet != null && !memberSet.isEmpty()) {
+                return memberSet.stream().filter(member -> !LOADED_MEMBER.equals(member))
+                        .map(Long::valueOf).collect(Collectors.toSet());
+            }
+            //集合不存在，先读版本号再从数据库加载，版本号没变才写入
+            String version = stringRedisTemplate.opsForValue().get(getVersionKey(userId));
+            teamIdSet = loadFromDb(userId);
+            List<String> args = new ArrayList<>(teamIdSet.size() + 3);
+            args.add(version == null ? "" : version);
+            args.add(String.valueOf(TimeUnit.MINUTES.toSeconds(REDIS_TTL_MINUTES)));
+            args.add(LOADED_MEMBER);
+            for (Long teamId : teamIdSet) {
+                args.add(String.valueOf(teamId));
+            }
+            Long saved = stringRedisTemplate.execute(SAVE_IF_UNCHANGED_SCRIPT, Arrays.asList(key, getVersionKey(userId)), args.toArray());
+            if (saved != null && saved == 1) {
+                return teamIdSet;
+            }
+        }
+        //一直有并发修改，本次直接使用数据库的结果，不写入集合
+        return teamIdSet;
+    }
+
+    private String getVersionKey(long userId) {
+        return VERSION_KEY_PREFIX + userId;
+    }
+
+    private Set<Long> loadFromDb(long userId) {
+        QueryWrapper<UserTeam> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("teamId").eq("userId", userId);
+        List<UserTeam> userTeamList = userTeamMapper.selectList(queryWrapper);
+        Set<Long> teamIdSet = new HashSet<>();
+        for (UserTeam userTeam : userTeamList) {
+            teamIdSet.add(userTeam.getTeamId());
+        }
+        return teamIdSet;
+    }
+
+    private static class LocalEntry {
+
+        private final Set<Long> teamIdSet;
+
+        private final long expireAt;
+
+        LocalEntry(Set<Long> teamIdSet, long expireAt) {
+            this.teamIdSet = Collections.unmodifiableSet(teamIdSet);
+            this.expireAt = expireAt;
+        }
+    }
+}
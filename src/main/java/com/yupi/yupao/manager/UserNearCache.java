@@ -0,0 +1,113 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.model.domain.User;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 登录用户的本地近端缓存（精简 Session 模式下使用，Session 中只保存用户 id）
+ * 1. 按 {@link UserVersionManager} 的版本号校验，版本号变了（用户信息被修改）才重新查库
+ * 2. 校验结果在本地保留几秒，这段时间内的请求不访问 Redis
+ * 3. 本实例修改、删除用户时立即失效，其他实例在下一次校验时发现（删除时同样递增版本号）
+ */
+@Component
+public class UserNearCache {
+
+    /**
+     * 两次版本号校验的最小间隔
+     */
+    private static final long RECHECK_MILLIS = 5 * 1000;
+
+    /**
+     * 闲置多久后清理
+     */
+    private static final long IDLE_MILLIS = 10 * 60 * 1000;
+
+    /**
+     * 最多缓存的用户数，超过时清空（按闲置时间清理跟不上时的兜底）
+     */
+    private static final int MAX_SIZE = 10000;
+
+    @Resource
+    private UserVersionManager userVersionManager;
+
+    private final Map<Long, Entry> entryMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取用户
+     * @param userId
+     * @param loader 版本号变化或未缓存时从数据库加载（已脱敏），用户不存在时返回 null
+     * @return 用户不存在时返回 null
+     */
+    public User get(long userId, Function<Long, User> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entryMap.get(userId);
+        if (entry != null && now - entry.checkedAt < RECHECK_MILLIS) {
+            entry.lastAccess = now;
+            return entry.user;
+        }
+        Long version = userVersionManager.getVersion(userId);
+        //用户已删除
+        if (version != null && version == UserVersionManager.NOT_FOUND) {
+            entryMap.remove(userId);
+            return null;
+        }
+        //版本号没变，或 Redis 异常时沿用本地的
+        if (entry != null && (version == null || Objects.equals(version, entry.version))) {
+            entry.checkedAt = now;
+            entry.lastAccess = now;
+            return entry.user;
+        }
+        User user = loader.apply(userId);
+        if (user == null) {
+            entryMap.remove(userId);
+            return null;
+        }
+        if (entryMap.size() >= MAX_SIZE) {
+            entryMap.clear();
+        }
+        entryMap.put(userId, new Entry(user, version, now));
+        return user;
+    }
+
+    /**
+     * 本实例修改用户信息后调用
+     * @param userId
+     */
+    public void evict(long userId) {
+        entryMap.remove(userId);
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        entryMap.values().removeIf(entry -> now - entry.lastAccess > IDLE_MILLIS);
+    }
+
+    private static class Entry {
+
+        private final User user;
+
+        /**
+         * 加载时的版本号，Redis 异常时为 null
+         */
+        private final Long version;
+
+        private volatile long checkedAt;
+
+        private volatile long lastAccess;
+
+        Entry(User user, Long version, long now) {
+            this.user = user;
+            this.version = version;
+            this.checkedAt = now;
+            this.lastAccess = now;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.yupi.yupao.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.yupi.yupao.mapper.UserMapper;
+import com.yupi.yupao.model.domain.User;
+import com.yupi.yupao.utlis.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户信息版本号（用于 ETag）
+ * 1. Redis：yupao:user:version:{userId}，缓存未命中时从数据库加载 updateTime 的毫秒值
+ * 2. 用户信息修改后递增版本号，保证版本号只增不减（updateTime 只精确到秒，同一秒内多次修改也能区分）
+ */
+@Component
+@Slf4j
+public class UserVersionManager {
+
+    private static final String KEY_PREFIX = "yupao:user:version:";
+
+    private static final long TTL_HOURS = 24;
+
+    /**
+     * 用户不存在（或已删除）时的版本号，与 Redis 异常（返回 null）区分
+     */
+    public static final long NOT_FOUND = -1L;
+
+    /**
+     * 新版本号取当前时间，不大于旧版本号时取旧版本号 + 1
+     */
+    private static final DefaultRedisScript<Long> BUMP_SCRIPT = new DefaultRedisScript<>(
+            "local old = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+                    "local version = tonumber(ARGV[1]) " +
+                    "if version <= old then version = old + 1 end " +
+                    "redis.call('SET', KEYS[1], version, 'EX', ARGV[2]) " +
+                    "return version", Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private UserMapper userMapper;
+
+    /**
+     * 用户信息当前版本号
+     * @param userId
+     * @return 用户不存在时返回 {@link #NOT_FOUND}，Redis 异常时返回 null（调用方不做条件请求）
+     */
+    public Long getVersion(long userId) {
+        String key = KEY_PREFIX + userId;
+        try {
+            String version = stringRedisTemplate.opsForValue().get(key);
+            if (version != null) {
+                return Long.parseLong(version);
+            }
+            //从数据库加载 updateTime，只查一列
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("updateTime").eq("id", userId);
+            List<Object> updateTimeList = userMapper.selectObjs(queryWrapper);
+            if (updateTimeList.isEmpty()) {
+                return NOT_FOUND;
+            }
+            Object updateTime = updateTimeList.get(0);
+            long loaded = updateTime instanceof Date ? ((Date) updateTime).getTime() : 0L;
+            //并发加载时以先写入的为准
+            Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(key, String.valueOf(loaded), TTL_HOURS, TimeUnit.HOURS);
+            if (Boolean.TRUE.equals(success)) {
+                return loaded;
+            }
+            version = stringRedisTemplate.opsForValue().get(key);
+            return version == null ? loaded : Long.parseLong(version);
+        } catch (Exception e) {
+            log.error("redis get user version error", e);
+            return null;
+        }
+    }
+
+    /**
+     * 用户信息修改、用户删除后调用（事务提交后生效）
+     * @param userId
+     */
+    public void bumpVersion(long userId) {
+        bumpVersion(Collections.singletonList(userId));
+    }
+
+    /**
+     * 批量删除用户后调用（事务提交后生效）
+     * @param userIdList
+     */
+    public void bumpVersion(Collection<Long> userIdList) {
+        TransactionUtils.afterCommit(() -> {
+            String now = String.valueOf(System.currentTimeMillis());
+            String ttlSeconds = String.valueOf(TimeUnit.HOURS.toSeconds(TTL_HOURS));
+            for (Long userId : userIdList) {
+                try {
+                    stringRedisTemplate.execute(BUMP_SCRIPT, Collections.singletonList(KEY_PREFIX + userId), now, ttlSeconds);
+                } catch (Exception e) {
+                    log.error("redis bump user version error", e);
+                }
+            }
+        });
+    }
+}
@@ -2,6 +2,10 @@ package com.yupi.yupao.mapper;
 
 import com.yupi.yupao.model.domain.Team;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
 
 /**
 * @author Cyqi
@@ -11,6 +15,108 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface TeamMapper extends BaseMapper<Team> {
 
+    /**
+     * 已加入人数 +1（未满时才更新）
+     * @param teamId
+     * @return 影响行数，0 表示队伍已满或不存在
+     */
+    int incrMemberCount(@Param("teamId") long teamId);
+
+    /**
+     * 已加入人数批量增加（调用方已锁定队伍行并校验容量）
+     * @param teamId
+     * @param num
+     * @return 影响行数
+     */
+    int addMemberCount(@Param("teamId") long teamId, @Param("num") int num);
+
+    /**
+     * 锁定并查询队伍（select ... for update），需要在事务中调用
+     * @param id
+     * @return 队伍不存在或已删除时返回 null
+     */
+    Team selectByIdForUpdate(@Param("id") long id);
+
+    /**
+     * 已加入人数 -1
+     * @param teamId
+     * @return 影响行数
+     */
+    int decrMemberCount(@Param("teamId") long teamId);
+
+    /**
+     * 成员退出时更新队伍：已加入人数 -1，退出的是队长时转移给其他成员中最早加入的（一条语句）
+     * 本语句锁定队伍行，调用方之后在同一事务中解除该成员的关系
+     * @param teamId
+     * @param userId 退出的用户
+     * @return 影响行数
+     */
+    int quitMember(@Param("teamId") long teamId, @Param("userId") long userId);
+
+    /**
+     * 解散队伍：已加入人数清零并逻辑删除
+     * @param idList
+     * @param onlyIfEmpty 为 true 时只解散没有剩余成员的队伍
+     * @return 影响行数，0 表示未解散
+     */
+    int dissolve(@Param("idList") List<Long> idList, @Param("onlyIfEmpty") boolean onlyIfEmpty);
+
+    /**
+     * 锁定队伍行（按 id 顺序，避免死锁），需要在事务中调用
+     * @param idList
+     * @return 未删除的队伍 id
+     */
+    List<Long> lockByIds(@Param("idList") List<Long> idList);
+
+    /**
+     * 按关系表重新统计已加入人数
+     * @param idList
+     * @return 影响行数
+     */
+    int recountMemberCount(@Param("idList") List<Long> idList);
+
+    /**
+     * 队长被删除时，转移给剩余成员中最早加入的（没有剩余成员的不变，由调用方解散）
+     * @param idList 队伍 id
+     * @param userIdList 被删除的用户 id
+     * @return 影响行数
+     */
+    int handoffLeader(@Param("idList") List<Long> idList, @Param("userIdList") List<Long> userIdList);
+
+    /**
+     * 查询没有剩余成员的队伍 id
+     * @param idList
+     * @return
+     */
+    List<Long> selectEmptyIds(@Param("idList") List<Long> idList);
+
+    /**
+     * 按关系表修正已加入人数
+     * @return 修正的队伍数
+     */
+    int reconcileMemberCount();
+
+    /**
+     * 查询待归档的队伍 id（已删除或已过期，包含逻辑删除的数据）
+     * @param now
+     * @param limit
+     * @return
+     */
+    List<Long> selectArchivableIds(@Param("now") Date now, @Param("limit") int limit);
+
+    /**
+     * 复制队伍到归档表
+     * @param idList
+     * @return
+     */
+    int archiveByIds(@Param("idList") List<Long> idList);
+
+    /**
+     * 物理删除队伍
+     * @param idList
+     * @return
+     */
+    int deletePhysicallyByIds(@Param("idList") List<Long> idList);
 }
 
 
@@ -2,6 +2,9 @@ package com.yupi.yupao.mapper;
 
 import com.yupi.yupao.model.domain.User;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 用户 Mapper
@@ -11,6 +14,19 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface UserMapper extends BaseMapper<User> {
 
+    /**
+     * 锁定用户行（select ... for update），需要在事务中调用
+     * @param id
+     * @return 用户不存在时返回 null
+     */
+    Long lockById(@Param("id") long id);
+
+    /**
+     * 按 id 顺序批量锁定用户行，需要在事务中调用
+     * @param idList
+     * @return 存在的用户 id
+     */
+    List<Long> lockByIds(@Param("idList") List<Long> idList);
 }
 
 
@@ -2,6 +2,10 @@ package com.yupi.yupao.mapper;
 
 import com.yupi.yupao.model.domain.UserTeam;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
 
 /**
 * @author Cyqi
@@ -11,6 +15,52 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface UserTeamMapper extends BaseMapper<UserTeam> {
 
+    /**
+     * 复制队伍的所有关系到归档表
+     * @param teamIdList
+     * @return
+     */
+    int archiveByTeamIds(@Param("teamIdList") List<Long> teamIdList);
+
+    /**
+     * 物理删除队伍的所有关系
+     * @param teamIdList
+     * @return
+     */
+    int deletePhysicallyByTeamIds(@Param("teamIdList") List<Long> teamIdList);
+
+    /**
+     * 恢复之前退出时逻辑删除的关系（user_team 上有 userId、teamId 唯一索引，重新加入不能再新增）
+     * @param userId
+     * @param teamId
+     * @param joinTime
+     * @return 影响行数，0 表示没有可恢复的关系
+     */
+    int reviveJoin(@Param("userId") long userId, @Param("teamId") long teamId, @Param("joinTime") Date joinTime);
+
+    /**
+     * 查询之前退出过该队伍（关系已逻辑删除）的用户
+     * @param teamId
+     * @param userIdList
+     * @return
+     */
+    List<Long> selectDeletedUserIds(@Param("teamId") long teamId, @Param("userIdList") List<Long> userIdList);
+
+    /**
+     * 批量恢复逻辑删除的关系
+     * @param teamId
+     * @param userIdList
+     * @param joinTime
+     * @return 影响行数
+     */
+    int reviveJoinBatch(@Param("teamId") long teamId, @Param("userIdList") List<Long> userIdList, @Param("joinTime") Date joinTime);
+
+    /**
+     * 批量新增关系（一条多行 insert）
+     * @param userTeamList
+     * @return 影响行数
+     */
+    int insertBatch(@Param("userTeamList") List<UserTeam> userTeamList);
 }
 
 
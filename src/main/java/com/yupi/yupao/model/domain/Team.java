@@ -36,6 +36,11 @@ public class Team implements Serializable {
      */
     private Integer maxNum;
 
+    /**
+     * 已加入人数（冗余字段，加入、退出、解散时原子维护）
+     */
+    private Integer memberCount;
+
     /**
      * 过期时间
      */
@@ -53,4 +53,9 @@ public class TeamQuery extends PageRequest {
      * 0 - 公开，1 - 私有，2 - 加密
      */
     private Integer status;
+
+    /**
+     * 需要返回的字段，逗号分隔（如 id,name,hasJoinNum），为空返回全部字段
+     */
+    private String fields;
 }
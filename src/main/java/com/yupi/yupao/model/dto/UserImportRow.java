@@ -0,0 +1,34 @@
+package com.yupi.yupao.model.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 批量导入的一行用户数据（NDJSON 的一个对象或 CSV 的一行）
+ */
+@Data
+public class UserImportRow implements Serializable {
+
+    private static final long serialVersionUID = -5093861277402748316L;
+
+    /**
+     * 账号
+     */
+    private String userAccount;
+
+    /**
+     * 密码（明文，导入时加密）
+     */
+    private String userPassword;
+
+    /**
+     * 星球编号
+     */
+    private String planetCode;
+
+    /**
+     * 用户昵称（可选）
+     */
+    private String username;
+}
@@ -0,0 +1,42 @@
+package com.yupi.yupao.model.request;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 批量删除队伍请求体（指定 id 列表或筛选条件，至少一项）
+ *
+ */
+@Data
+public class TeamBatchDeleteRequest implements Serializable {
+
+    private static final long serialVersionUID = 7815320946614218802L;
+
+    /**
+     * 队伍 id 列表
+     */
+    private List<Long> idList;
+
+    /**
+     * 队伍名称（模糊匹配）
+     */
+    private String name;
+
+    /**
+     * 队长 id
+     */
+    private Long userId;
+
+    /**
+     * 创建时间起始（包含）
+     */
+    private Date createTimeStart;
+
+    /**
+     * 创建时间截止（不包含）
+     */
+    private Date createTimeEnd;
+}
@@ -0,0 +1,37 @@
+package com.yupi.yupao.model.request;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 批量删除用户请求体（指定 id 列表或筛选条件，至少一项）
+ *
+ */
+@Data
+public class UserBatchDeleteRequest implements Serializable {
+
+    private static final long serialVersionUID = -2469853087913527461L;
+
+    /**
+     * 用户 id 列表
+     */
+    private List<Long> idList;
+
+    /**
+     * 账号（模糊匹配）
+     */
+    private String userAccount;
+
+    /**
+     * 创建时间起始（包含）
+     */
+    private Date createTimeStart;
+
+    /**
+     * 创建时间截止（不包含）
+     */
+    private Date createTimeEnd;
+}
@@ -0,0 +1,49 @@
+package com.yupi.yupao.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 批量任务进度
+ */
+@Data
+public class BatchTaskVO implements Serializable {
+
+    private static final long serialVersionUID = 2650391746225383718L;
+
+    /**
+     * 任务 id
+     */
+    private String taskId;
+
+    /**
+     * 任务类型，如 user:delete
+     */
+    private String action;
+
+    /**
+     * 状态：running 执行中，succeed 成功，failed 失败
+     */
+    private String status;
+
+    /**
+     * 待处理总数（开始时统计）
+     */
+    private long total;
+
+    /**
+     * 已处理数
+     */
+    private long processed;
+
+    /**
+     * 实际删除数
+     */
+    private long affected;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+}
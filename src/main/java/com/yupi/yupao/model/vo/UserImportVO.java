@@ -0,0 +1,50 @@
+package com.yupi.yupao.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 批量导入用户结果
+ */
+@Data
+public class UserImportVO implements Serializable {
+
+    private static final long serialVersionUID = 8326750914277310459L;
+
+    /**
+     * 读取的数据行数（不含空行、CSV 表头）
+     */
+    private long total;
+
+    /**
+     * 导入成功数
+     */
+    private long imported;
+
+    /**
+     * 账号或星球编号重复数（与已有用户或导入数据中的前面行重复）
+     */
+    private long duplicated;
+
+    /**
+     * 格式错误、校验不通过数
+     */
+    private long invalid;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private long costMillis;
+
+    /**
+     * 吞吐量（行 / 秒）
+     */
+    private double rowsPerSecond;
+
+    /**
+     * 失败的行及原因（最多返回前 100 条）
+     */
+    private List<String> errorList;
+}
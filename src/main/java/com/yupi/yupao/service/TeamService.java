@@ -4,12 +4,14 @@ import com.yupi.yupao.model.domain.Team;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.yupi.yupao.model.domain.User;
 import com.yupi.yupao.model.dto.TeamQuery;
+import com.yupi.yupao.model.request.TeamBatchDeleteRequest;
 import com.yupi.yupao.model.request.TeamJoinRequest;
 import com.yupi.yupao.model.request.TeamQuitRequest;
 import com.yupi.yupao.model.request.TeamUpdateRequest;
 import com.yupi.yupao.model.vo.TeamUserVO;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
 * @author Cyqi
@@ -50,6 +52,14 @@ public interface TeamService extends IService<Team> {
      */
     boolean joinTeam(TeamJoinRequest teamJoinRequest, User loginUser);
 
+    /**
+     * 异步加入队伍（join-mode = queue 时排队批量加入，其他方式直接返回已完成的结果）
+     * @param teamJoinRequest
+     * @param loginUser
+     * @return 加入失败时以 BusinessException 异常完成
+     */
+    CompletableFuture<Boolean> joinTeamAsync(TeamJoinRequest teamJoinRequest, User loginUser);
+
     /**
      * 退出队伍
      * @param teamQuitRequest
@@ -65,4 +75,50 @@ public interface TeamService extends IService<Team> {
      * @return
      */
     boolean deleteTeam(long id, User logininUser);
+
+    /**
+     * 归档一批队伍（连同队伍关系），在同一事务内迁移到归档表并从热表删除
+     * @param teamIdList
+     * @return 归档的队伍数
+     */
+    int archiveTeams(List<Long> teamIdList);
+
+    /**
+     * 解散已到期的队伍（由过期队列触发）
+     * 到期的队伍连同队伍关系一起删除；过期时间已被延后的队伍重新入队
+     * @param teamIdList
+     * @return 解散的队伍 id
+     */
+    List<Long> expireTeams(List<Long> teamIdList);
+
+    /**
+     * 统计批量删除的队伍数
+     * @param teamBatchDeleteRequest
+     * @return
+     */
+    long countBatchDelete(TeamBatchDeleteRequest teamBatchDeleteRequest);
+
+    /**
+     * 按 id 升序取一块待删除的队伍 id（键集分页）
+     * @param teamBatchDeleteRequest
+     * @param lastId 上一块最大的 id
+     * @param limit
+     * @return
+     */
+    List<Long> listBatchDeleteIds(TeamBatchDeleteRequest teamBatchDeleteRequest, long lastId, int limit);
+
+    /**
+     * 删除一块队伍（管理员），连同队伍关系，一个短事务
+     * @param teamIdList
+     * @return 删除的队伍数
+     */
+    int deleteTeamsChunk(List<Long> teamIdList);
+
+    /**
+     * 删除一块用户（管理员），一个短事务内级联处理：
+     * 解除队伍关系、重新统计已加入人数、转移队长、解散没有剩余成员的队伍
+     * @param userIdList
+     * @return 删除的用户数
+     */
+    int deleteUsersChunk(List<Long> userIdList);
 }
@@ -1,9 +1,12 @@
 package com.yupi.yupao.service;
 
 import com.yupi.yupao.model.domain.User;
+import com.yupi.yupao.model.request.UserBatchDeleteRequest;
+import com.yupi.yupao.model.vo.UserImportVO;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -62,6 +65,13 @@ public interface UserService extends IService<User> {
      */
     User getLogininUser(HttpServletRequest request);
 
+    /**
+     * 获取当前用户信息，未登录时返回 null
+     * @param request
+     * @return
+     */
+    User getLogininUserOrNull(HttpServletRequest request);
+
     /**
      * 更新用户信息
      * @param user
@@ -82,4 +92,28 @@ public interface UserService extends IService<User> {
      * @return
      */
     List<User> matchUsers(long num, User loginUser);
+
+    /**
+     * 统计批量删除的用户数
+     * @param userBatchDeleteRequest
+     * @return
+     */
+    long countBatchDelete(UserBatchDeleteRequest userBatchDeleteRequest);
+
+    /**
+     * 按 id 升序取一块待删除的用户 id（键集分页）
+     * @param userBatchDeleteRequest
+     * @param lastId 上一块最大的 id
+     * @param limit
+     * @return
+     */
+    List<Long> listBatchDeleteIds(UserBatchDeleteRequest userBatchDeleteRequest, long lastId, int limit);
+
+    /**
+     * 批量导入用户（流式读取，按批并行校验、去重、批量插入）
+     * @param inputStream NDJSON（每行一个对象）或带表头的 CSV
+     * @param csv 是否为 CSV
+     * @return 导入结果
+     */
+    UserImportVO importUsers(InputStream inputStream, boolean csv);
 }
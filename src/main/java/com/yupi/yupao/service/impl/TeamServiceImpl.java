@@ -1,15 +1,28 @@
 package com.yupi.yupao.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.github.xiaoymin.knife4j.core.util.CollectionUtils;
 import com.yupi.yupao.common.ErrorCode;
+import com.yupi.yupao.enums.TeamJoinModeEnum;
 import com.yupi.yupao.enums.TeamStatusEnum;
 import com.yupi.yupao.exception.BusinessException;
+import com.yupi.yupao.manager.BloomFilterManager;
+import com.yupi.yupao.manager.LockManager;
+import com.yupi.yupao.manager.TeamExpireQueue;
+import com.yupi.yupao.manager.TeamJoinAdmissionManager;
+import com.yupi.yupao.manager.TeamJoinQueue;
+import com.yupi.yupao.manager.TeamListCacheManager;
+import com.yupi.yupao.manager.TeamSearchIndex;
+import com.yupi.yupao.manager.UserJoinTeamManager;
+import com.yupi.yupao.manager.UserNearCache;
+import com.yupi.yupao.manager.UserVersionManager;
 import com.yupi.yupao.model.domain.Team;
 import com.yupi.yupao.model.domain.User;
 import com.yupi.yupao.model.domain.UserTeam;
 import com.yupi.yupao.model.dto.TeamQuery;
+import com.yupi.yupao.model.request.TeamBatchDeleteRequest;
 import com.yupi.yupao.model.request.TeamJoinRequest;
 import com.yupi.yupao.model.request.TeamQuitRequest;
 import com.yupi.yupao.model.request.TeamUpdateRequest;
@@ -17,22 +30,38 @@ import com.yupi.yupao.model.vo.TeamUserVO;
 import com.yupi.yupao.model.vo.UserVO;
 import com.yupi.yupao.service.TeamService;
 import com.yupi.yupao.mapper.TeamMapper;
+import com.yupi.yupao.mapper.UserMapper;
+import com.yupi.yupao.mapper.UserTeamMapper;
 import com.yupi.yupao.service.UserService;
 import com.yupi.yupao.service.UserTeamService;
+import com.yupi.yupao.utlis.FieldsetUtils;
+import com.yupi.yupao.utlis.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
 import org.springframework.beans.BeanUtils;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 /**
 * @author Cyqi
@@ -40,14 +69,79 @@ import java.util.concurrent.TimeUnit;
 * @createDate 2024-11-12 18:00:57
 */
 @Service
+@Slf4j
 public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
     implements TeamService{
     @Resource
     private UserTeamService userTeamService;
     @Resource
     private UserService userService;
-    @Autowired
-    private RedissonClient redissonClient;
+    @Resource
+    private LockManager lockManager;
+    @Resource
+    private BloomFilterManager bloomFilterManager;
+    @Resource
+    private TeamListCacheManager teamListCacheManager;
+    @Resource
+    private TeamSearchIndex teamSearchIndex;
+    @Resource
+    private UserTeamMapper userTeamMapper;
+    @Resource
+    private TeamExpireQueue teamExpireQueue;
+    @Resource
+    private UserJoinTeamManager userJoinTeamManager;
+    @Resource
+    private TeamJoinAdmissionManager teamJoinAdmissionManager;
+    @Resource
+    private TransactionTemplate transactionTemplate;
+    @Resource
+    private UserMapper userMapper;
+    @Resource
+    private TeamJoinQueue teamJoinQueue;
+    @Resource
+    private UserVersionManager userVersionManager;
+    @Resource
+    private UserNearCache userNearCache;
+
+    /**
+     * 关键词搜索最多返回的队伍数，也是按相关度回表时每批的 id 数
+     */
+    private static final int SEARCH_LIMIT = 200;
+
+    /**
+     * 关键词搜索最多回表的候选队伍数（候选队伍大多被状态、过期时间等条件过滤掉时的上限）
+     */
+    private static final int SEARCH_CANDIDATE_LIMIT = 5000;
+
+    /**
+     * 批量删除一次最多指定的 id 数
+     */
+    private static final int MAX_BATCH_DELETE_ID_NUM = 10000;
+
+    /**
+     * 用户最多加入的队伍数
+     */
+    private static final int MAX_JOIN_TEAM_NUM = 5;
+
+    private static final String JOIN_TEAM_USER_LOCK_PREFIX = "yupao:join_team:user:";
+
+    private static final String JOIN_TEAM_TEAM_LOCK_PREFIX = "yupao:join_team:team:";
+
+    /**
+     * 加入队伍时等待锁的最长时间（秒）
+     */
+    private static final long JOIN_TEAM_LOCK_WAIT_SECONDS = 3;
+
+    /**
+     * 同步排队加入时等待结果的最长时间（秒）
+     */
+    private static final long JOIN_QUEUE_WAIT_SECONDS = 10;
+
+    /**
+     * 加入队伍的方式，见 TeamJoinModeEnum
+     */
+    @Value("${yupao.team.join-mode:lock}")
+    private String joinMode;
 
     /**
      * 添加队伍
@@ -110,6 +204,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         //插入到队伍信息到列表当中
         team.setId(null);
         team.setUserId(userId);
+        team.setMemberCount(1);
         boolean result = this.save(team);
         Long teamId = team.getId();
         if (!result||teamId==null){
@@ -125,7 +220,11 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if (!result){
             throw new BusinessException(ErrorCode.PARAMS_ERROR,"创建队伍失败");
         }
-
+        bloomFilterManager.addTeam(teamId);
+        teamSearchIndex.put(team);
+        teamExpireQueue.schedule(teamId, expireTime);
+        userJoinTeamManager.addJoin(userId, teamId);
+        teamListCacheManager.bumpVersion();
         return teamId;
     }
 
@@ -138,13 +237,125 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
      * 2. 不展示已过期的队伍（根据过期时间筛选）
      * 3. 可以通过某个关键词同时对名称和描述查询
      * 4. 只有管理员才能查看加密还有非公开的房间
-     * 5. 关联查询已加入队伍的用户信息
-     * 6. 关联查询已加入队伍的用户信息
+     * 5. 关联查询创建人的用户信息（按 id 批量查询）
+     * 6. 已加入队伍的人数直接取队伍表的 memberCount
+     * 不论返回多少支队伍，固定只执行 2 条 SQL（关键词搜索时按相关度分批回表，批数取决于被过滤掉的候选数）
+     * 结果按版本号缓存，队伍有写操作时版本号递增
      */
     @Override
     public List<TeamUserVO> listTeams(TeamQuery teamQuery, boolean isAdmin) {
-        //查询数据库有什么队伍
+        String queryKey = teamListCacheManager.buildQueryKey(teamQuery, isAdmin);
+        long version;
+        try {
+            version = teamListCacheManager.getVersion();
+            List<TeamUserVO> cacheTeamList = teamListCacheManager.get(version, queryKey);
+            if (cacheTeamList != null) {
+                return cacheTeamList;
+            }
+        } catch (Exception e) {
+            log.error("redis get team list cache error", e);
+            return doListTeams(teamQuery, isAdmin);
+        }
+        List<TeamUserVO> teamList = doListTeams(teamQuery, isAdmin);
+        //写缓存
+        try {
+            teamListCacheManager.put(version, queryKey, teamList);
+        } catch (Exception e) {
+            log.error("redis set team list cache error", e);
+        }
+        return teamList;
+    }
+
+    private List<TeamUserVO> doListTeams(TeamQuery teamQuery, boolean isAdmin) {
+        //只查请求的字段，id 和 userId 始终需要
+        Set<String> fieldSet = teamQuery == null ? Collections.emptySet()
+                : FieldsetUtils.parseFields(teamQuery.getFields(), FieldsetUtils.TEAM_FIELD_COLUMN_MAP);
+        String searchText = teamQuery == null ? null : teamQuery.getSearchText();
+        List<Team> teamList;
+        if (StringUtils.isNotBlank(searchText) && teamSearchIndex.isReady() && teamSearchIndex.isSearchable(searchText)){
+            //走倒排索引拿到按相关度排序的队伍 id，再分批回表过滤
+            List<Long> rankedIdList = teamSearchIndex.search(searchText, SEARCH_CANDIDATE_LIMIT);
+            teamList = listRankedTeams(teamQuery, isAdmin, fieldSet, rankedIdList);
+        }else {
+            //查询数据库有什么队伍
+            QueryWrapper<Team> queryWrapper = buildListQueryWrapper(teamQuery, isAdmin, fieldSet);
+            if (StringUtils.isNotBlank(searchText)){
+                //索引还没构建完成、或查询词没有可用的 gram 时回退到模糊查询
+                queryWrapper.and(qw -> qw.like("name",searchText).or().like("description",searchText));
+            }
+            teamList = this.list(queryWrapper);
+        }
+        if (CollectionUtils.isEmpty(teamList)){
+            return new ArrayList<>();
+        }
+        //批量查询创建人信息   创建人id -> 创建人（没有请求创建人字段时不查）
+        Set<Long> userIdSet = teamList.stream().map(Team::getUserId).filter(Objects::nonNull).collect(Collectors.toSet());
+        boolean needCreateUser = fieldSet.isEmpty() || fieldSet.contains("createUser");
+        Map<Long, User> userIdUserMap = !needCreateUser || CollectionUtils.isEmpty(userIdSet) ? new HashMap<>()
+                : userService.listByIds(userIdSet).stream().collect(Collectors.toMap(User::getId, user -> user));
+        ArrayList<TeamUserVO> teamUserOVList = new ArrayList<>();
+        //关联关键创建人信息
+        for (Team team : teamList) {
+            Long userId = team.getUserId();
+            if (userId==null){
+                continue;
+            }
+            TeamUserVO teamUserVO = new TeamUserVO();
+            //拷贝
+            BeanUtils.copyProperties(team,teamUserVO);
+            //用户脱敏
+            User user = userIdUserMap.get(userId);
+            if (user!=null){
+                UserVO userVO = new UserVO();
+                BeanUtils.copyProperties(user, userVO);
+                teamUserVO.setCreateUser(userVO);
+            }
+            //已加入人数直接取冗余字段
+            teamUserVO.setHasJoinNum(Optional.ofNullable(team.getMemberCount()).orElse(0));
+            teamUserOVList.add(teamUserVO);
+
+        }
+        return teamUserOVList;
+    }
+
+    /**
+     * 按相关度分批回表：每批的 id 都带上其余查询条件，过滤后按相关度顺序追加，直到凑满一页或候选用完
+     * 先取前若干个 id 再过滤的话，相关度高的队伍大多已过期或非公开时一页会远不足
+     * @param teamQuery
+     * @param isAdmin
+     * @param fieldSet
+     * @param rankedIdList 按相关度从高到低排序的队伍 id
+     * @return
+     */
+    private List<Team> listRankedTeams(TeamQuery teamQuery, boolean isAdmin, Set<String> fieldSet, List<Long> rankedIdList) {
+        List<Team> teamList = new ArrayList<>();
+        for (int from = 0; from < rankedIdList.size() && teamList.size() < SEARCH_LIMIT; from += SEARCH_LIMIT) {
+            List<Long> batchIdList = rankedIdList.subList(from, Math.min(from + SEARCH_LIMIT, rankedIdList.size()));
+            QueryWrapper<Team> queryWrapper = buildListQueryWrapper(teamQuery, isAdmin, fieldSet);
+            queryWrapper.in("id", batchIdList);
+            Map<Long, Team> teamMap = this.list(queryWrapper).stream().collect(Collectors.toMap(Team::getId, team -> team));
+            for (Long teamId : batchIdList) {
+                Team team = teamMap.get(teamId);
+                if (team != null && teamList.size() < SEARCH_LIMIT) {
+                    teamList.add(team);
+                }
+            }
+        }
+        return teamList;
+    }
+
+    /**
+     * 查询队伍的条件（关键词搜索除外）
+     * @param teamQuery
+     * @param isAdmin
+     * @param fieldSet
+     * @return
+     */
+    private QueryWrapper<Team> buildListQueryWrapper(TeamQuery teamQuery, boolean isAdmin, Set<String> fieldSet) {
         QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+        if (!fieldSet.isEmpty()){
+            queryWrapper.select(FieldsetUtils.toColumns(fieldSet, FieldsetUtils.TEAM_FIELD_COLUMN_MAP, "id", "userId"));
+        }
         //判断参数是否为空  这里做一个优化，如果我们设置参数为空的化我们直接生成一些队伍列表，如果直接为空白页面不好看
         //因此我们写成不为空
         if (teamQuery!=null){
@@ -158,12 +369,8 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
             if (CollectionUtils.isNotEmpty(idList)){
                 queryWrapper.in("id",idList);
             }
-            String searchText = teamQuery.getSearchText();
-            if (StringUtils.isNotBlank(searchText)){
-                queryWrapper.and(qw -> qw.like("name",searchText).or().like("description",searchText));
-            }
             String name = teamQuery.getName();
-            if (StringUtils.isNotBlank(searchText)){
+            if (StringUtils.isNotBlank(name)){
                 queryWrapper.like("name",name);
             }
             String  description= teamQuery.getDescription();
@@ -192,31 +399,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         }
         //不展示过期的队伍
         queryWrapper.and(qw -> qw.gt("expireTime",new Date()).or().isNull("expireTime"));
-        List<Team> teamList = this.list(queryWrapper);
-        if (CollectionUtils.isEmpty(teamList)){
-            return new ArrayList<>();
-        }
-        ArrayList<TeamUserVO> teamUserOVList = new ArrayList<>();
-        //关联关键创建人信息
-        for (Team team : teamList) {
-            Long userId = team.getUserId();
-            if (userId==null){
-                continue;
-            }
-            User user = userService.getById(userId);
-            TeamUserVO teamUserVO = new TeamUserVO();
-            //拷贝
-            BeanUtils.copyProperties(team,teamUserVO);
-            //用户脱敏
-            if (user==null){
-                UserVO userVO = new UserVO();
-                BeanUtils.copyProperties(user, userVO);
-                teamUserVO.setCreateUser(userVO);
-            }
-            teamUserOVList.add(teamUserVO);
-
-        }
-        return teamUserOVList;
+        return queryWrapper;
     }
 
     /**
@@ -253,7 +436,18 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         }
         Team updateTeam = new Team();
         BeanUtils.copyProperties(teamUpdateRequest, updateTeam);
-        return this.updateById(updateTeam);
+        boolean result = this.updateById(updateTeam);
+        //更新搜索索引（未修改的字段沿用旧值）
+        Team indexTeam = new Team();
+        indexTeam.setId(id);
+        indexTeam.setName(Optional.ofNullable(updateTeam.getName()).orElse(oldTeam.getName()));
+        indexTeam.setDescription(Optional.ofNullable(updateTeam.getDescription()).orElse(oldTeam.getDescription()));
+        teamSearchIndex.put(indexTeam);
+        if (updateTeam.getExpireTime() != null){
+            teamExpireQueue.schedule(id, updateTeam.getExpireTime());
+        }
+        teamListCacheManager.bumpVersion();
+        return result;
 
     }
 
@@ -268,10 +462,42 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
      * 3. 不能加入自己的队伍，不能重复加入已加入的队伍（幂等性）
      * 4. 禁止加入私有的队伍
      * 5. 如果加入的队伍是加密的，必须密码匹配才可以
-     * 6. 新增队伍 - 用户关联信息
+     * 6. 新增队伍 - 用户关联信息，同时已加入人数 +1（同一事务）
+     * 7. 按 yupao.team.join-mode 选择并发控制方式：lock 用户 + 队伍联锁，lua Redis 脚本原子准入，cas 数据库条件更新，queue 按队伍排队批量加入
      */
     @Override
     public boolean joinTeam(TeamJoinRequest teamJoinRequest, User loginUser) {
+        Team team = checkJoinable(teamJoinRequest);
+        long teamId = team.getId();
+        long userId = loginUser.getId();
+        TeamJoinModeEnum joinModeEnum = TeamJoinModeEnum.getEnumByValue(joinMode);
+        if (TeamJoinModeEnum.LUA.equals(joinModeEnum)){
+            return joinTeamByLua(team, userId);
+        }
+        if (TeamJoinModeEnum.CAS.equals(joinModeEnum)){
+            return joinTeamByCas(teamId, userId);
+        }
+        if (TeamJoinModeEnum.QUEUE.equals(joinModeEnum)){
+            return awaitJoin(teamJoinQueue.submit(teamId, userId, this::joinTeamBatch));
+        }
+        return joinTeamByLock(teamId, userId);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> joinTeamAsync(TeamJoinRequest teamJoinRequest, User loginUser) {
+        if (!TeamJoinModeEnum.QUEUE.equals(TeamJoinModeEnum.getEnumByValue(joinMode))){
+            return CompletableFuture.completedFuture(joinTeam(teamJoinRequest, loginUser));
+        }
+        Team team = checkJoinable(teamJoinRequest);
+        return teamJoinQueue.submit(team.getId(), loginUser.getId(), this::joinTeamBatch);
+    }
+
+    /**
+     * 校验队伍是否可以加入（存在、未过期、非私有、密码正确）
+     * @param teamJoinRequest
+     * @return
+     */
+    private Team checkJoinable(TeamJoinRequest teamJoinRequest) {
         //判断参数是否有误或者空
         if (teamJoinRequest==null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
@@ -299,53 +525,239 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
                 throw new BusinessException(ErrorCode.PARAMS_ERROR,"密码错误");
             }
         }
-        //该用户已加入的队伍数量
-        Long userId = loginUser.getId();
-        RLock lock = redissonClient.getLock("yupao:join_team");
+        return team;
+    }
+
+    /**
+     * 加锁校验并加入
+     * 同时锁住用户和队伍（固定先用户后队伍的顺序），不相关的用户、队伍之间互不阻塞
+     * @param teamId
+     * @param userId
+     * @return
+     */
+    private boolean joinTeamByLock(long teamId, long userId) {
+        LockManager.InstrumentedLock lock = lockManager.getMultiLock("join_team",
+                JOIN_TEAM_USER_LOCK_PREFIX + userId, JOIN_TEAM_TEAM_LOCK_PREFIX + teamId);
         try{
-            //执行锁并行
-            while (true){
-                if (lock.tryLock(0,-1, TimeUnit.MILLISECONDS)){
-                    System.out.println("getLock"+Thread.currentThread().getId());
-                    QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
-                    userTeamQueryWrapper.eq("userId",userId);
-                    long hasJoinNum = userTeamService.count(userTeamQueryWrapper);
-                    if (hasJoinNum>5){
-                        throw new BusinessException(ErrorCode.PARAMS_ERROR,"最多加入五支队伍");
-                    }
-                    //不能加入重复的队伍
-                    userTeamQueryWrapper = new QueryWrapper<>();
-                    userTeamQueryWrapper.eq("userId",userId);
-                    userTeamQueryWrapper.eq("teamId",teamId);
-                    long hasUserJoinTeam=userTeamService.count(userTeamQueryWrapper);
-                    if (hasUserJoinTeam>0){
-                        throw new BusinessException(ErrorCode.PARAMS_ERROR,"用户已加入该队伍");
-                    }
-                    //判断队伍是否已经满了
-                    userTeamQueryWrapper = new QueryWrapper<>();
-                    userTeamQueryWrapper.eq("teamId",teamId);
-                    long hasUserJoinNum=userTeamService.count(userTeamQueryWrapper);
-                    if (hasUserJoinNum>team.getMaxNum()){
-                        throw new BusinessException(ErrorCode.PARAMS_ERROR,"队伍已满");
-                    }
-                    //加入修改信息
-                    UserTeam userTeam = new UserTeam();
-                    userTeam.setUserId(userId);
-                    userTeam.setTeamId(teamId);
-                    userTeam.setJoinTime(new Date());
-                    return userTeamService.save(userTeam);
-                }
+            //有限时间内等待，拿不到锁直接返回，不自旋
+            if (!lock.tryLock(JOIN_TEAM_LOCK_WAIT_SECONDS, -1, TimeUnit.SECONDS)){
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR,"加入队伍的人太多，请稍后重试");
             }
+            //事务在锁内提交，释放锁前其他请求看不到未提交的数据
+            Boolean result = transactionTemplate.execute(status -> {
+                //该用户已加入的队伍数量
+                QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
+                userTeamQueryWrapper.eq("userId",userId);
+                long hasJoinNum = userTeamService.count(userTeamQueryWrapper);
+                if (hasJoinNum>=MAX_JOIN_TEAM_NUM){
+                    throw new BusinessException(ErrorCode.PARAMS_ERROR,"最多加入五支队伍");
+                }
+                //不能加入重复的队伍
+                userTeamQueryWrapper = new QueryWrapper<>();
+                userTeamQueryWrapper.eq("userId",userId);
+                userTeamQueryWrapper.eq("teamId",teamId);
+                long hasUserJoinTeam=userTeamService.count(userTeamQueryWrapper);
+                if (hasUserJoinTeam>0){
+                    throw new BusinessException(ErrorCode.PARAMS_ERROR,"用户已加入该队伍");
+                }
+                return doJoinTeam(teamId, userId);
+            });
+            return Boolean.TRUE.equals(result);
         }catch (InterruptedException e){
-            log.error("doCacheRecommendUser error",e);
+            Thread.currentThread().interrupt();
+            log.error("joinTeam lock interrupted",e);
             return false;
         }finally {
-            if (lock.isHeldByCurrentThread()){
-                System.out.println("unlock:"+Thread.currentThread().getId());
-                lock.unlock();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Redis 脚本原子准入后写库，不持有任何锁
+     * 写库失败时释放 Redis 中占用的名额；Redis 不可用或准入数据未加载时回退到只依赖数据库的 CAS 方式
+     * @param team
+     * @param userId
+     * @return
+     */
+    private boolean joinTeamByLua(Team team, long userId) {
+        long teamId = team.getId();
+        long admitResult;
+        try {
+            admitResult = teamJoinAdmissionManager.tryAdmit(userId, team, MAX_JOIN_TEAM_NUM);
+        } catch (Exception e) {
+            log.error("redis team join admission error, fallback to cas", e);
+            return joinTeamByCas(teamId, userId);
+        }
+        if (admitResult == TeamJoinAdmissionManager.NOT_LOADED){
+            return joinTeamByCas(teamId, userId);
+        }
+        if (admitResult == TeamJoinAdmissionManager.DUPLICATE){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"用户已加入该队伍");
+        }
+        if (admitResult == TeamJoinAdmissionManager.USER_LIMIT){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"最多加入五支队伍");
+        }
+        if (admitResult == TeamJoinAdmissionManager.TEAM_FULL){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"队伍已满");
+        }
+        try {
+            Boolean result = transactionTemplate.execute(status -> doJoinTeam(teamId, userId));
+            return Boolean.TRUE.equals(result);
+        } catch (RuntimeException e) {
+            teamJoinAdmissionManager.release(userId, teamId);
+            throw e;
+        }
+    }
+
+    /**
+     * 不加分布式锁，完全由数据库保证正确性（Redis 不可用时也能加入）
+     * 1. 锁定用户行，同一用户的加入请求排队，保证加入上限
+     * 2. 条件更新 memberCount < maxNum 作为 CAS，影响行数为 0 表示队伍已满
+     * 3. userId、teamId 唯一索引，主键冲突表示已加入
+     * @param teamId
+     * @param userId
+     * @return
+     */
+    private boolean joinTeamByCas(long teamId, long userId) {
+        Boolean result = transactionTemplate.execute(status -> {
+            if (userMapper.lockById(userId) == null){
+                throw new BusinessException(ErrorCode.NULL_ERROR,"用户不存在");
+            }
+            QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
+            userTeamQueryWrapper.eq("userId",userId);
+            long hasJoinNum = userTeamService.count(userTeamQueryWrapper);
+            if (hasJoinNum>=MAX_JOIN_TEAM_NUM){
+                throw new BusinessException(ErrorCode.PARAMS_ERROR,"最多加入五支队伍");
+            }
+            return doJoinTeam(teamId, userId);
+        });
+        return Boolean.TRUE.equals(result);
+    }
+
+    /**
+     * 同步等待排队加入的结果
+     * @param future
+     * @return
+     */
+    private boolean awaitJoin(CompletableFuture<Boolean> future) {
+        try {
+            return Boolean.TRUE.equals(future.get(JOIN_QUEUE_WAIT_SECONDS, TimeUnit.SECONDS));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
             }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR,"加入失败");
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR,"排队超时，请刷新后查看是否已加入");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
+    }
 
+    /**
+     * 同一队伍的一批加入请求，一个事务内完成（join-mode = queue）
+     * 1. 锁定队伍行，再按 id 顺序锁定用户行（多实例同时处理同一队伍时由数据库排队，固定顺序避免死锁）
+     * 2. 按排队顺序逐个校验：用户存在、未加入、未达到加入上限、队伍还有名额
+     * 3. 之前退出过的批量恢复关系，其余一条多行 insert，已加入人数一次更新
+     * @param teamId
+     * @param userIdList 按排队顺序
+     * @return 加入失败的用户及原因
+     */
+    private Map<Long, BusinessException> joinTeamBatch(Long teamId, List<Long> userIdList) {
+        Map<Long, BusinessException> failMap = new HashMap<>();
+        transactionTemplate.execute(status -> {
+            Team team = this.baseMapper.selectByIdForUpdate(teamId);
+            if (team == null){
+                throw new BusinessException(ErrorCode.PARAMS_ERROR,"队伍不存在");
+            }
+            Date expireTime = team.getExpireTime();
+            if (expireTime !=null && expireTime.before(new Date())){
+                throw new BusinessException(ErrorCode.PARAMS_ERROR,"队伍已过期");
+            }
+            List<Long> sortedUserIdList = new ArrayList<>(userIdList);
+            Collections.sort(sortedUserIdList);
+            Set<Long> existUserIdSet = new HashSet<>(userMapper.lockByIds(sortedUserIdList));
+            //已加入该队伍的用户
+            Set<Long> joinedUserIdSet = userTeamService.list(new QueryWrapper<UserTeam>().select("userId")
+                    .eq("teamId", teamId).in("userId", userIdList))
+                    .stream().map(UserTeam::getUserId).collect(Collectors.toSet());
+            //各用户已加入的队伍数（每人最多几条，直接查出来计数）
+            Map<Long, Long> joinNumMap = userTeamService.list(new QueryWrapper<UserTeam>().select("userId").in("userId", userIdList))
+                    .stream().collect(Collectors.groupingBy(UserTeam::getUserId, Collectors.counting()));
+            int remainNum = Optional.ofNullable(team.getMaxNum()).orElse(0) - Optional.ofNullable(team.getMemberCount()).orElse(0);
+            List<Long> admitUserIdList = new ArrayList<>();
+            for (Long userId : userIdList) {
+                if (!existUserIdSet.contains(userId)){
+                    failMap.put(userId, new BusinessException(ErrorCode.NULL_ERROR,"用户不存在"));
+                }else if (joinedUserIdSet.contains(userId)){
+                    failMap.put(userId, new BusinessException(ErrorCode.PARAMS_ERROR,"用户已加入该队伍"));
+                }else if (joinNumMap.getOrDefault(userId, 0L)>=MAX_JOIN_TEAM_NUM){
+                    failMap.put(userId, new BusinessException(ErrorCode.PARAMS_ERROR,"最多加入五支队伍"));
+                }else if (admitUserIdList.size()>=remainNum){
+                    failMap.put(userId, new BusinessException(ErrorCode.PARAMS_ERROR,"队伍已满"));
+                }else {
+                    admitUserIdList.add(userId);
+                }
+            }
+            if (admitUserIdList.isEmpty()){
+                return 0;
+            }
+            Date joinTime = new Date();
+            Set<Long> deletedUserIdSet = new HashSet<>(userTeamMapper.selectDeletedUserIds(teamId, admitUserIdList));
+            if (!deletedUserIdSet.isEmpty()){
+                userTeamMapper.reviveJoinBatch(teamId, new ArrayList<>(deletedUserIdSet), joinTime);
+            }
+            List<UserTeam> userTeamList = new ArrayList<>();
+            for (Long userId : admitUserIdList) {
+                if (!deletedUserIdSet.contains(userId)){
+                    UserTeam userTeam = new UserTeam();
+                    userTeam.setUserId(userId);
+                    userTeam.setTeamId(teamId);
+                    userTeam.setJoinTime(joinTime);
+                    userTeamList.add(userTeam);
+                }
+            }
+            if (!userTeamList.isEmpty()){
+                userTeamMapper.insertBatch(userTeamList);
+            }
+            this.baseMapper.addMemberCount(teamId, admitUserIdList.size());
+            admitUserIdList.forEach(userId -> userJoinTeamManager.addJoin(userId, teamId));
+            teamListCacheManager.bumpVersion();
+            return admitUserIdList.size();
+        });
+        return failMap;
+    }
+
+    /**
+     * 写入队伍 - 用户关系，已加入人数 +1（需要在事务中调用）
+     * @param teamId
+     * @param userId
+     * @return
+     */
+    private boolean doJoinTeam(long teamId, long userId) {
+        //已加入人数原子 +1，队伍已满时影响行数为 0
+        if (this.baseMapper.incrMemberCount(teamId)==0){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"队伍已满");
+        }
+        //之前退出过的恢复原来的关系，否则新增；唯一索引冲突说明已加入
+        Date joinTime = new Date();
+        boolean result = userTeamMapper.reviveJoin(userId, teamId, joinTime) > 0;
+        if (!result){
+            UserTeam userTeam = new UserTeam();
+            userTeam.setUserId(userId);
+            userTeam.setTeamId(teamId);
+            userTeam.setJoinTime(joinTime);
+            try {
+                result = userTeamService.save(userTeam);
+            } catch (DuplicateKeyException e) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR,"用户已加入该队伍");
+            }
+        }
+        userJoinTeamManager.addJoin(userId, teamId);
+        teamListCacheManager.bumpVersion();
+        return result;
     }
 
     /**
@@ -355,16 +767,16 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
      * @return
      * 请求参数：队伍 id
      * 1.  校验请求参数
-     * 2.  校验队伍是否存在
-     * 3.  校验我是否已加入队伍
-     * 4.  如果队伍
-     *   a.  只剩一人，队伍解散
-     *   b.  还有其他人
-     *     ⅰ.  如果是队长退出队伍，权限转移给第二早加入的用户 —— 先来后到
-     * 只用取 id 最小的 2 条数据
-     *    	 ⅱ.  非队长，自己退出队伍
+     * 2.  校验队伍是否存在、是否已加入（不加锁，未加入的请求不与加入、退出争抢队伍行）
+     * 3.  已加入人数 -1，队长退出时转移给其他成员中最早加入的 —— 先来后到（一条语句，锁定队伍行）
+     * 4.  解除关系，影响行数为 0 说明已被并发退出，回滚
+     * 5.  没有剩余成员时解散队伍（一条语句）
+     * 以上在同一事务中完成，语句数固定
+     * 与加入的加锁顺序一致：先队伍行（加入的 incrMemberCount、退出的 quitMember），再 user_team 行，
+     * InnoDB 行锁持有到事务结束，顺序相同时并发的加入、退出只会在队伍行上排队，不会死锁
      */
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public boolean quitTeam(TeamQuitRequest teamQuitRequest, User logininUser) {
         if (teamQuitRequest==null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR,"teamQuitRequest 不能为空");
@@ -378,49 +790,33 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if (team==null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR,"队伍不存现在");
         }
-        //检查我是否在队伍当中
         Long userId = logininUser.getId();
         UserTeam queryUserTeam = new UserTeam();
         queryUserTeam.setUserId(userId);
         queryUserTeam.setTeamId(teamId);
         QueryWrapper<UserTeam> queryWrapper = new QueryWrapper<>(queryUserTeam);
-        long count = userTeamService.count(queryWrapper);
-        if (count<0){
+        if (userTeamService.count(queryWrapper) == 0){
             throw new BusinessException(ErrorCode.PARAMS_ERROR,"未加入队伍");
         }
-        //判断队伍人数有多少人，如果 = 0 解散
-       // queryWrapper.eq("teamId",teamId);
-        long teamHasJoinNum = countTeamUserByTeamId(teamId);
-        if (teamHasJoinNum==1){
-            //删除队伍
-            this.removeById(teamId);
-        }else {
-            //队伍剩下两个或者以上的人数时
-            //判断自己是不是队长 是队长 把队伍转移到最早加入的用户
-            if (team.getUserId()==userId){
-                //查询该队伍所有用户加入时间
-                QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
-                userTeamQueryWrapper.eq("teamId",teamId);
-                userTeamQueryWrapper.last("order by id asc limit 2");
-                List<UserTeam> userTeamList = userTeamService.list(userTeamQueryWrapper);
-                if (CollectionUtils.isEmpty(userTeamList)  || userTeamList.size()<=1){
-                    throw new BusinessException(ErrorCode.SYSTEM_ERROR);
-                }
-                UserTeam nextUserTeam = userTeamList.get(1);
-                Long nextTeamLeaderId = nextUserTeam.getUserId();
-                //更新队长
-                Team updateTeam = new Team();
-                updateTeam.setId(teamId);
-                updateTeam.setUserId(nextTeamLeaderId);
-                boolean result = this.updateById(updateTeam);
-                if (!result){
-                    throw new BusinessException(ErrorCode.PARAMS_ERROR,"退出失败");
-                }
-            }
+        //先锁队伍行：已加入人数 -1，是队长时转移队长
+        if (this.baseMapper.quitMember(teamId, userId) == 0){
+            //队伍已被并发解散
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"队伍不存现在");
         }
-
-        //解除关系
-        return userTeamService.remove(queryWrapper);
+        //再解除关系，影响行数为 0 说明已被并发退出
+        if (!userTeamService.remove(queryWrapper)){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"未加入队伍");
+        }
+        teamJoinAdmissionManager.decrMemberCount(teamId);
+        //按剩余的关系判断，没有成员时解散
+        if (this.baseMapper.dissolve(Collections.singletonList(teamId), true) > 0){
+            TransactionUtils.afterCommit(() -> teamSearchIndex.remove(teamId));
+            teamExpireQueue.removeAfterCommit(Collections.singletonList(teamId));
+            teamJoinAdmissionManager.evict(Collections.singletonList(teamId));
+        }
+        userJoinTeamManager.removeJoin(userId, teamId);
+        teamListCacheManager.bumpVersion();
+        return true;
     }
 
     /**
@@ -429,45 +825,251 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
      * @param logininUser
      * @return
      * 校验参数
-     * 检验队伍是否存在
+     * 锁定并检验队伍是否存在
      * 校验你自己是否为队长
      * 移除所加入的信息
-     * 删除队伍
+     * 删除队伍（人数清零和逻辑删除一条语句）
      * 添加事务
      */
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean deleteTeam(long id, User logininUser) {
-        if (id<0){
+        if (id<=0){
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
-        //查看队伍是否存在
+        //先不加锁校验队长，无权删除的请求不锁队伍行
         Team team = this.getById(id);
-        Long teamId = team.getId();
-        if (teamId==null){
-            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        if (team==null){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"队伍不存在");
+        }
+        if (!Objects.equals(team.getUserId(), logininUser.getId())){
+            throw new BusinessException(ErrorCode.NO_AUTH,"无权访问");
+        }
+        //锁定到事务结束，删除期间不会有人加入；队长可能已被并发转移，锁定后再校验一次
+        team = this.baseMapper.selectByIdForUpdate(id);
+        if (team==null){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"队伍不存在");
         }
-        if (team.getUserId() !=logininUser.getId()){
+        if (!Objects.equals(team.getUserId(), logininUser.getId())){
             throw new BusinessException(ErrorCode.NO_AUTH,"无权访问");
         }
+        long teamId = team.getId();
         //移除所有加入队伍的关联信息
+        List<Long> memberIdList = userTeamService.list(new QueryWrapper<UserTeam>().select("userId").eq("teamId", teamId))
+                .stream().map(UserTeam::getUserId).collect(Collectors.toList());
         QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
         userTeamQueryWrapper.eq("teamId",teamId);
         boolean result = userTeamService.remove(userTeamQueryWrapper);
         if (!result) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR,"删除队伍关联信息失败");
         }
-        return this.removeById(teamId);
+        if (this.baseMapper.dissolve(Collections.singletonList(teamId), false) <= 0){
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR,"删除队伍失败");
+        }
+        userJoinTeamManager.removeJoin(memberIdList, teamId);
+        TransactionUtils.afterCommit(() -> teamSearchIndex.remove(teamId));
+        teamExpireQueue.removeAfterCommit(Collections.singletonList(teamId));
+        teamJoinAdmissionManager.evict(Collections.singletonList(teamId));
+        teamListCacheManager.bumpVersion();
+        return true;
     }
 
-    //查寻队伍人数
-    private long countTeamUserByTeamId(long teamId){
-        QueryWrapper<UserTeam> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("teamId",teamId);
-        return userTeamService.count(queryWrapper);
+    /**
+     * 归档队伍
+     * @param teamIdList
+     * @return
+     * 1. 复制队伍、队伍关系到归档表
+     * 2. 物理删除热表中的队伍关系、队伍
+     * 3. 与解散到期队伍相同，事务提交后清理成员集合、人数计数、列表缓存、索引和过期队列
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int archiveTeams(List<Long> teamIdList) {
+        if (CollectionUtils.isEmpty(teamIdList)){
+            return 0;
+        }
+        //成员的已加入队伍集合整体失效
+        Set<Long> memberIdSet = userTeamService.list(new QueryWrapper<UserTeam>().select("userId").in("teamId", teamIdList))
+                .stream().map(UserTeam::getUserId).collect(Collectors.toSet());
+        this.baseMapper.archiveByIds(teamIdList);
+        userTeamMapper.archiveByTeamIds(teamIdList);
+        userTeamMapper.deletePhysicallyByTeamIds(teamIdList);
+        int archiveNum = this.baseMapper.deletePhysicallyByIds(teamIdList);
+        userJoinTeamManager.evict(memberIdSet);
+        TransactionUtils.afterCommit(() -> teamIdList.forEach(teamSearchIndex::remove));
+        teamExpireQueue.removeAfterCommit(teamIdList);
+        teamJoinAdmissionManager.evict(teamIdList);
+        teamListCacheManager.bumpVersion();
+        return archiveNum;
     }
-}
 
+    /**
+     * 解散到期队伍
+     * @param teamIdList
+     * @return
+     * 1. 以数据库中的过期时间为准，过期时间被延后的重新入队
+     * 2. 批量删除队伍关系、队伍（同一事务）
+     * 3. 批量清理缓存、索引，从过期队列移除
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<Long> expireTeams(List<Long> teamIdList) {
+        if (CollectionUtils.isEmpty(teamIdList)){
+            return new ArrayList<>();
+        }
+        Date now = new Date();
+        List<Long> expiredIdList = new ArrayList<>();
+        Set<Long> aliveIdSet = new HashSet<>();
+        for (Team team : this.listByIds(teamIdList)) {
+            Date expireTime = team.getExpireTime();
+            if (expireTime != null && !expireTime.after(now)){
+                expiredIdList.add(team.getId());
+            }else {
+                //过期时间被延后或取消，按最新的过期时间重新入队
+                teamExpireQueue.schedule(team.getId(), expireTime);
+                aliveIdSet.add(team.getId());
+            }
+        }
+        if (!expiredIdList.isEmpty()){
+            QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
+            userTeamQueryWrapper.in("teamId", expiredIdList);
+            //成员的已加入队伍集合整体失效
+            Set<Long> memberIdSet = userTeamService.list(new QueryWrapper<UserTeam>().select("userId").in("teamId", expiredIdList))
+                    .stream().map(UserTeam::getUserId).collect(Collectors.toSet());
+            userJoinTeamManager.evict(memberIdSet);
+            userTeamService.remove(userTeamQueryWrapper);
+            UpdateWrapper<Team> teamUpdateWrapper = new UpdateWrapper<>();
+            teamUpdateWrapper.set("memberCount", 0).in("id", expiredIdList);
+            this.update(teamUpdateWrapper);
+            this.removeByIds(expiredIdList);
+            TransactionUtils.afterCommit(() -> expiredIdList.forEach(teamSearchIndex::remove));
+            teamJoinAdmissionManager.evict(expiredIdList);
+            teamListCacheManager.bumpVersion();
+        }
+        //已解散和已不存在的队伍移出队列
+        List<Long> removeIdList = teamIdList.stream().filter(teamId -> !aliveIdSet.contains(teamId)).collect(Collectors.toList());
+        teamExpireQueue.removeAfterCommit(removeIdList);
+        return expiredIdList;
+    }
+
+    @Override
+    public long countBatchDelete(TeamBatchDeleteRequest teamBatchDeleteRequest) {
+        return this.count(buildBatchDeleteQueryWrapper(teamBatchDeleteRequest));
+    }
 
+    @Override
+    public List<Long> listBatchDeleteIds(TeamBatchDeleteRequest teamBatchDeleteRequest, long lastId, int limit) {
+        QueryWrapper<Team> queryWrapper = buildBatchDeleteQueryWrapper(teamBatchDeleteRequest);
+        queryWrapper.select("id").gt("id", lastId).orderByAsc("id").last("limit " + limit);
+        return this.listObjs(queryWrapper, obj -> Long.valueOf(obj.toString()));
+    }
+
+    /**
+     * 批量删除的条件：id 列表和筛选条件同时生效，至少指定一项
+     * @param teamBatchDeleteRequest
+     * @return
+     */
+    private QueryWrapper<Team> buildBatchDeleteQueryWrapper(TeamBatchDeleteRequest teamBatchDeleteRequest) {
+        if (teamBatchDeleteRequest == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        List<Long> idList = teamBatchDeleteRequest.getIdList();
+        String name = teamBatchDeleteRequest.getName();
+        Long userId = teamBatchDeleteRequest.getUserId();
+        Date createTimeStart = teamBatchDeleteRequest.getCreateTimeStart();
+        Date createTimeEnd = teamBatchDeleteRequest.getCreateTimeEnd();
+        if (CollectionUtils.isEmpty(idList) && StringUtils.isBlank(name) && userId == null
+                && createTimeStart == null && createTimeEnd == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "请指定要删除的 id 或筛选条件");
+        }
+        if (idList != null && idList.size() > MAX_BATCH_DELETE_ID_NUM) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "id 列表过长");
+        }
+        QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in(CollectionUtils.isNotEmpty(idList), "id", idList);
+        queryWrapper.like(StringUtils.isNotBlank(name), "name", name);
+        queryWrapper.eq(userId != null, "userId", userId);
+        queryWrapper.ge(createTimeStart != null, "createTime", createTimeStart);
+        queryWrapper.lt(createTimeEnd != null, "createTime", createTimeEnd);
+        return queryWrapper;
+    }
 
+    /**
+     * 删除一块队伍
+     * 1. 按 id 顺序锁定队伍行，删除期间不会有人加入
+     * 2. 批量解除队伍关系，人数清零并逻辑删除（各一条语句）
+     * 3. 成员的已加入队伍集合、索引、过期队列、人数计数在事务提交后清理
+     */
+    @Override
+    public int deleteTeamsChunk(List<Long> teamIdList) {
+        if (CollectionUtils.isEmpty(teamIdList)){
+            return 0;
+        }
+        Integer deleteNum = transactionTemplate.execute(status -> {
+            List<Long> lockedIdList = this.baseMapper.lockByIds(teamIdList);
+            if (lockedIdList.isEmpty()){
+                return 0;
+            }
+            Set<Long> memberIdSet = new HashSet<>(userTeamService.listObjs(
+                    new QueryWrapper<UserTeam>().select("userId").in("teamId", lockedIdList), obj -> Long.valueOf(obj.toString())));
+            userTeamService.remove(new QueryWrapper<UserTeam>().in("teamId", lockedIdList));
+            int num = this.baseMapper.dissolve(lockedIdList, false);
+            userJoinTeamManager.evict(memberIdSet);
+            TransactionUtils.afterCommit(() -> lockedIdList.forEach(teamSearchIndex::remove));
+            teamExpireQueue.removeAfterCommit(lockedIdList);
+            teamJoinAdmissionManager.evict(lockedIdList);
+            teamListCacheManager.bumpVersion();
+            return num;
+        });
+        return deleteNum == null ? 0 : deleteNum;
+    }
 
+    /**
+     * 删除一块用户
+     * 1. 找出受影响的队伍（被删除用户担任队长或已加入的），按 id 顺序锁定
+     * 2. 批量解除关系，按关系表重新统计人数，队长转移给剩余成员中最早加入的，解散没有剩余成员的队伍
+     * 3. 逻辑删除用户；缓存、索引在事务提交后清理
+     * 每一步都是一条语句，语句数与块大小无关
+     */
+    @Override
+    public int deleteUsersChunk(List<Long> userIdList) {
+        if (CollectionUtils.isEmpty(userIdList)){
+            return 0;
+        }
+        Integer deleteNum = transactionTemplate.execute(status -> {
+            Set<Long> teamIdSet = new TreeSet<>();
+            teamIdSet.addAll(this.listObjs(new QueryWrapper<Team>().select("id").in("userId", userIdList),
+                    obj -> Long.valueOf(obj.toString())));
+            teamIdSet.addAll(userTeamService.listObjs(new QueryWrapper<UserTeam>().select("teamId").in("userId", userIdList),
+                    obj -> Long.valueOf(obj.toString())));
+            List<Long> teamIdList = new ArrayList<>(teamIdSet);
+            if (!teamIdList.isEmpty()){
+                this.baseMapper.lockByIds(teamIdList);
+            }
+            userTeamService.remove(new QueryWrapper<UserTeam>().in("userId", userIdList));
+            List<Long> emptyIdList = new ArrayList<>();
+            if (!teamIdList.isEmpty()){
+                this.baseMapper.recountMemberCount(teamIdList);
+                this.baseMapper.handoffLeader(teamIdList, userIdList);
+                emptyIdList = this.baseMapper.selectEmptyIds(teamIdList);
+                if (!emptyIdList.isEmpty()){
+                    this.baseMapper.dissolve(emptyIdList, false);
+                }
+            }
+            int num = userMapper.deleteBatchIds(userIdList);
+            userJoinTeamManager.evict(userIdList);
+            //已登录的会话在下一次校验版本号时失效
+            userVersionManager.bumpVersion(userIdList);
+            TransactionUtils.afterCommit(() -> userIdList.forEach(userNearCache::evict));
+            if (!teamIdList.isEmpty()){
+                List<Long> dissolvedIdList = emptyIdList;
+                TransactionUtils.afterCommit(() -> dissolvedIdList.forEach(teamSearchIndex::remove));
+                teamExpireQueue.removeAfterCommit(dissolvedIdList);
+                teamJoinAdmissionManager.evict(teamIdList);
+                teamListCacheManager.bumpVersion();
+            }
+            return num;
+        });
+        return deleteNum == null ? 0 : deleteNum;
+    }
+}
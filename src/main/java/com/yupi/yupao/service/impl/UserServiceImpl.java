@@ -1,33 +1,65 @@
 package com.yupi.yupao.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.yupi.yupao.common.ErrorCode;
 import com.yupi.yupao.exception.BusinessException;
+import com.yupi.yupao.manager.AuthTokenManager;
+import com.yupi.yupao.manager.BloomFilterManager;
+import com.yupi.yupao.manager.UserNearCache;
+import com.yupi.yupao.manager.UserVersionManager;
 import com.yupi.yupao.model.domain.User;
+import com.yupi.yupao.model.dto.UserImportRow;
+import com.yupi.yupao.model.request.UserBatchDeleteRequest;
+import com.yupi.yupao.model.vo.UserImportVO;
 import com.yupi.yupao.service.UserService;
 import com.yupi.yupao.mapper.UserMapper;
+import com.yupi.yupao.utlis.AccountValidator;
 import com.yupi.yupao.utlis.AlgorithmUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.math3.util.Pair;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.DigestUtils;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.yupi.yupao.contant.UserConstant.ADMIN_ROLE;
+import static com.yupi.yupao.contant.UserConstant.USER_LOGIN_ID;
 import static com.yupi.yupao.contant.UserConstant.USER_LOGIN_STATE;
 
 /**
@@ -43,6 +75,24 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
 
     @Resource
     private UserMapper userMapper;
+    @Resource
+    private BloomFilterManager bloomFilterManager;
+    @Resource
+    private UserVersionManager userVersionManager;
+    @Resource
+    private AuthTokenManager authTokenManager;
+    @Resource
+    private UserNearCache userNearCache;
+    @Resource
+    private TransactionTemplate transactionTemplate;
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 精简 Session：Session 中只保存用户 id，完整信息从近端缓存读取
+     */
+    @Value("${yupao.auth.compact-session:false}")
+    private boolean compactSession;
 
     // https://www.code-nav.cn/
 
@@ -51,6 +101,39 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      */
     private static final String SALT = "yupi";
 
+    /**
+     * 批量删除一次最多指定的 id 数
+     */
+    private static final int MAX_BATCH_DELETE_ID_NUM = 10000;
+
+    /**
+     * 批量导入每批的行数（一次 JDBC 批量插入）
+     */
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    /**
+     * 批量导入的并行线程数（所有导入共用）
+     */
+    private static final int IMPORT_WORKER_NUM = 4;
+
+    /**
+     * 导入结果中最多返回的失败行数
+     */
+    private static final int IMPORT_MAX_ERROR_NUM = 100;
+
+    private static final AtomicInteger IMPORT_THREAD_NUM = new AtomicInteger();
+
+    /**
+     * 批量导入线程池：队列满时由读取请求体的线程自己处理，读取速度跟着插入速度走，不会把整个文件读进内存
+     */
+    private final ExecutorService importExecutor = new ThreadPoolExecutor(IMPORT_WORKER_NUM, IMPORT_WORKER_NUM,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(IMPORT_WORKER_NUM * 2),
+            runnable -> {
+                Thread thread = new Thread(runnable, "user-import-" + IMPORT_THREAD_NUM.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+
     /**
      * 用户注册
      *
@@ -63,53 +146,55 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Override
     public long userRegister(String userAccount, String userPassword, String checkPassword, String planetCode) {
         // 1. 校验
-        if (StringUtils.isAnyBlank(userAccount, userPassword, checkPassword, planetCode)) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数为空");
-        }
-        if (userAccount.length() < 4) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户账号过短");
-        }
-        if (userPassword.length() < 8 || checkPassword.length() < 8) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户密码过短");
-        }
-        if (planetCode.length() > 5) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "星球编号过长");
+        String errorMessage = AccountValidator.checkRegister(userAccount, userPassword, checkPassword, planetCode);
+        if (errorMessage != null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, errorMessage);
         }
         // 账户不能包含特殊字符
-        String validPattern = "[`~!@#$%^&*()+=|{}':;',\\\\[\\\\].<>/?~！@#￥%……&*（）——+|{}【】‘；：”“’。，、？]";
-        Matcher matcher = Pattern.compile(validPattern).matcher(userAccount);
-        if (matcher.find()) {
+        if (AccountValidator.containsSpecialChar(userAccount)) {
             return -1;
         }
         // 密码和校验密码相同
         if (!userPassword.equals(checkPassword)) {
             return -1;
         }
-        // 账户不能重复
-        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("userAccount", userAccount);
-        long count = userMapper.selectCount(queryWrapper);
-        if (count > 0) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "账号重复");
+        // 账户不能重复（布隆过滤器判定不存在时不查库，最终由唯一索引保证）
+        if (bloomFilterManager.mightContainAccount(userAccount)) {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.eq("userAccount", userAccount);
+            long count = userMapper.selectCount(queryWrapper);
+            if (count > 0) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "账号重复");
+            }
         }
         // 星球编号不能重复
-        queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("planetCode", planetCode);
-        count = userMapper.selectCount(queryWrapper);
-        if (count > 0) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "编号重复");
+        if (bloomFilterManager.mightContainPlanetCode(planetCode)) {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.eq("planetCode", planetCode);
+            long count = userMapper.selectCount(queryWrapper);
+            if (count > 0) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "编号重复");
+            }
         }
         // 2. 加密
-        String encryptPassword = DigestUtils.md5DigestAsHex((SALT + userPassword).getBytes());
+        String encryptPassword = encryptPassword(userPassword);
         // 3. 插入数据
         User user = new User();
         user.setUserAccount(userAccount);
         user.setUserPassword(encryptPassword);
         user.setPlanetCode(planetCode);
-        boolean saveResult = this.save(user);
+        boolean saveResult;
+        try {
+            saveResult = this.save(user);
+        } catch (DuplicateKeyException e) {
+            // 并发注册
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, getDuplicateMessage(user, null));
+        }
         if (!saveResult) {
             return -1;
         }
+        bloomFilterManager.addUser(user.getId());
+        bloomFilterManager.addUserCredential(userAccount, planetCode);
         return user.getId();
     }
 
@@ -125,24 +210,17 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      */
     @Override
     public User userLogin(String userAccount, String userPassword, HttpServletRequest request) {
-        // 1. 校验
-        if (StringUtils.isAnyBlank(userAccount, userPassword)) {
+        // 1. 校验（含账户特殊字符）
+        if (!AccountValidator.checkLogin(userAccount, userPassword)) {
             return null;
         }
-        if (userAccount.length() < 4) {
-            return null;
-        }
-        if (userPassword.length() < 8) {
-            return null;
-        }
-        // 账户不能包含特殊字符
-        String validPattern = "[`~!@#$%^&*()+=|{}':;',\\\\[\\\\].<>/?~！@#￥%……&*（）——+|{}【】‘；：”“’。，、？]";
-        Matcher matcher = Pattern.compile(validPattern).matcher(userAccount);
-        if (matcher.find()) {
+        // 账号一定不存在时不查库（严格模式：本地副本和 Redis 的代不一致时查库）
+        if (!bloomFilterManager.mightContainAccountStrictly(userAccount)) {
+            log.info("user login failed, userAccount not exists");
             return null;
         }
         // 2. 加密
-        String encryptPassword = DigestUtils.md5DigestAsHex((SALT + userPassword).getBytes());
+        String encryptPassword = encryptPassword(userPassword);
         // 查询用户是否存在
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("userAccount", userAccount);
@@ -155,8 +233,15 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         }
         // 3. 用户脱敏
         User safetyUser = getSafetyUser(user);
-        // 4. 记录用户的登录态
-        request.getSession().setAttribute(USER_LOGIN_STATE, safetyUser);
+        // 4. 记录用户的登录态（令牌模式由 Controller 签发令牌，不写 Session；精简模式只保存 id）
+        if (authTokenManager.isTokenMode()) {
+            return safetyUser;
+        }
+        if (compactSession) {
+            request.getSession().setAttribute(USER_LOGIN_ID, safetyUser.getId());
+        } else {
+            request.getSession().setAttribute(USER_LOGIN_STATE, safetyUser);
+        }
         return safetyUser;
     }
 
@@ -195,7 +280,19 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Override
     public int userLogout(HttpServletRequest request) {
         // 移除登录态
-        request.getSession().removeAttribute(USER_LOGIN_STATE);
+        if (authTokenManager.isTokenMode()) {
+            AuthTokenManager.TokenPayload tokenPayload = authTokenManager.verify(
+                    authTokenManager.resolveToken(request.getHeader(AuthTokenManager.HEADER_NAME)));
+            if (tokenPayload != null) {
+                authTokenManager.revoke(tokenPayload);
+            }
+            return 1;
+        }
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            session.removeAttribute(USER_LOGIN_STATE);
+            session.removeAttribute(USER_LOGIN_ID);
+        }
         return 1;
     }
 
@@ -244,11 +341,41 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (request==null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        if (userObj==null) {
+        User loginUser = getLogininUserOrNull(request);
+        if (loginUser==null) {
             throw new BusinessException(ErrorCode.NO_AUTH);
         }
-        return  (User)userObj;
+        return loginUser;
+    }
+
+    @Override
+    public User getLogininUserOrNull(HttpServletRequest request) {
+        if (request==null){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        //令牌模式本地验签，只包含 id 和角色
+        if (authTokenManager.isTokenMode()) {
+            AuthTokenManager.TokenPayload tokenPayload = authTokenManager.verify(
+                    authTokenManager.resolveToken(request.getHeader(AuthTokenManager.HEADER_NAME)));
+            if (tokenPayload == null) {
+                return null;
+            }
+            User user = new User();
+            user.setId(tokenPayload.getUserId());
+            user.setUserRole(tokenPayload.getUserRole());
+            return user;
+        }
+        //不为未登录的请求创建会话
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        //精简模式从近端缓存取完整的用户信息，用户信息修改后不会读到旧数据
+        Object userIdObj = session.getAttribute(USER_LOGIN_ID);
+        if (userIdObj != null) {
+            return userNearCache.get((Long) userIdObj, userId -> getSafetyUser(userMapper.selectById(userId)));
+        }
+        return (User) session.getAttribute(USER_LOGIN_STATE);
     }
 
     /**
@@ -272,7 +399,18 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (userold==null) {
             throw new BusinessException(ErrorCode.NULL_ERROR);
         }
-        return userMapper.updateById(user);
+        int result;
+        try {
+            result = userMapper.updateById(user);
+        } catch (DuplicateKeyException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, getDuplicateMessage(user, userId));
+        }
+        //修改了账号、编号时写入布隆过滤器，否则新账号无法登录
+        bloomFilterManager.addUserCredential(user.getUserAccount(), user.getPlanetCode());
+        //用户信息变了，之前的 ETag、近端缓存失效
+        userVersionManager.bumpVersion(userId);
+        userNearCache.evict(userId);
+        return result;
 
     }
 
@@ -286,9 +424,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (request==null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        User user= (User) userObj;
-        return user !=null && user.getUserRole() ==ADMIN_ROLE;
+        return isAdmin(getLogininUserOrNull(request));
     }
     public boolean isAdmin(User loginUser) {
         return loginUser != null && loginUser.getUserRole() ==ADMIN_ROLE;
@@ -324,6 +460,11 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         List<User> userList = this.list(queryWrapper);
 
         String tags = loginUser.getTags();
+        //令牌模式的登录用户只有 id 和角色，标签从数据库读取
+        if (tags == null) {
+            User tagUser = this.getOne(new QueryWrapper<User>().select("id", "tags").eq("id", loginUser.getId()));
+            tags = tagUser == null ? null : tagUser.getTags();
+        }
         Gson gson = new Gson();
         List<String> tagList = gson.fromJson(tags, new TypeToken<List<String>>() {
         }.getType());
@@ -363,5 +504,366 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
 
         return finalUserList;
     }
-}
 
+    @Override
+    public long countBatchDelete(UserBatchDeleteRequest userBatchDeleteRequest) {
+        return this.count(buildBatchDeleteQueryWrapper(userBatchDeleteRequest));
+    }
+
+    @Override
+    public List<Long> listBatchDeleteIds(UserBatchDeleteRequest userBatchDeleteRequest, long lastId, int limit) {
+        QueryWrapper<User> queryWrapper = buildBatchDeleteQueryWrapper(userBatchDeleteRequest);
+        queryWrapper.select("id").gt("id", lastId).orderByAsc("id").last("limit " + limit);
+        return this.listObjs(queryWrapper, obj -> Long.valueOf(obj.toString()));
+    }
+
+    /**
+     * 批量删除的条件：id 列表和筛选条件同时生效，至少指定一项
+     * @param userBatchDeleteRequest
+     * @return
+     */
+    private QueryWrapper<User> buildBatchDeleteQueryWrapper(UserBatchDeleteRequest userBatchDeleteRequest) {
+        if (userBatchDeleteRequest == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        List<Long> idList = userBatchDeleteRequest.getIdList();
+        String userAccount = userBatchDeleteRequest.getUserAccount();
+        Date createTimeStart = userBatchDeleteRequest.getCreateTimeStart();
+        Date createTimeEnd = userBatchDeleteRequest.getCreateTimeEnd();
+        if (CollectionUtils.isEmpty(idList) && StringUtils.isBlank(userAccount) && createTimeStart == null && createTimeEnd == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "请指定要删除的 id 或筛选条件");
+        }
+        if (idList != null && idList.size() > MAX_BATCH_DELETE_ID_NUM) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "id 列表过长");
+        }
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in(!CollectionUtils.isEmpty(idList), "id", idList);
+        queryWrapper.like(StringUtils.isNotBlank(userAccount), "userAccount", userAccount);
+        queryWrapper.ge(createTimeStart != null, "createTime", createTimeStart);
+        queryWrapper.lt(createTimeEnd != null, "createTime", createTimeEnd);
+        return queryWrapper;
+    }
+
+    /**
+     * 批量导入用户
+     * 1. 读取线程逐行读取请求体，每 IMPORT_BATCH_SIZE 行交给线程池，解析、校验、去重和插入在工作线程中并行
+     * 2. 导入数据内部按账号、星球编号去重；与已有用户的重复先用布隆过滤器筛出可能存在的，再按批 IN 查询
+     * 3. 每批一次 JDBC 批量插入（MySQL 需开启 rewriteBatchedStatements 合并为多值 INSERT），
+     *    唯一索引冲突（并发注册、已删除用户占用）时该批回滚，逐行重新插入
+     */
+    @Override
+    public UserImportVO importUsers(InputStream inputStream, boolean csv) {
+        if (inputStream == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        long startTime = System.currentTimeMillis();
+        ImportContext context = new ImportContext();
+        List<Future<?>> futureList = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String[] header = null;
+            List<ImportLine> lineList = new ArrayList<>(IMPORT_BATCH_SIZE);
+            String line;
+            long lineNum = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNum++;
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+                if (csv && header == null) {
+                    header = line.trim().split(",");
+                    continue;
+                }
+                lineList.add(new ImportLine(lineNum, line));
+                if (lineList.size() >= IMPORT_BATCH_SIZE) {
+                    futureList.add(submitImportBatch(lineList, header, context));
+                    lineList = new ArrayList<>(IMPORT_BATCH_SIZE);
+                }
+            }
+            if (!lineList.isEmpty()) {
+                futureList.add(submitImportBatch(lineList, header, context));
+            }
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+        } catch (IOException e) {
+            log.error("read user import data error", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取导入数据失败");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "导入被中断");
+        } catch (ExecutionException e) {
+            log.error("import users error", e.getCause());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "导入失败，已导入 " + context.imported.get() + " 条");
+        } finally {
+            //读取失败时不再处理已提交但未开始的批次
+            for (Future<?> future : futureList) {
+                future.cancel(false);
+            }
+        }
+        long costMillis = System.currentTimeMillis() - startTime;
+        UserImportVO userImportVO = new UserImportVO();
+        userImportVO.setTotal(context.total.get());
+        userImportVO.setImported(context.imported.get());
+        userImportVO.setDuplicated(context.duplicated.get());
+        userImportVO.setInvalid(context.invalid.get());
+        userImportVO.setCostMillis(costMillis);
+        userImportVO.setRowsPerSecond(context.total.get() * 1000.0 / Math.max(1, costMillis));
+        userImportVO.setErrorList(context.getErrorList());
+        log.info("import users finished, total: {}, imported: {}, duplicated: {}, invalid: {}, cost: {}ms, {} rows/s",
+                userImportVO.getTotal(), userImportVO.getImported(), userImportVO.getDuplicated(), userImportVO.getInvalid(),
+                costMillis, (long) userImportVO.getRowsPerSecond());
+        return userImportVO;
+    }
+
+    @PreDestroy
+    public void shutdownImportExecutor() {
+        importExecutor.shutdown();
+    }
+
+    private Future<?> submitImportBatch(List<ImportLine> lineList, String[] header, ImportContext context) {
+        context.total.addAndGet(lineList.size());
+        return importExecutor.submit(() -> importBatch(lineList, header, context));
+    }
+
+    /**
+     * 处理一批导入数据（工作线程）
+     */
+    private void importBatch(List<ImportLine> lineList, String[] header, ImportContext context) {
+        // 1. 解析、校验，导入数据内部去重
+        Map<String, ImportLine> accountLineMap = new HashMap<>();
+        for (ImportLine importLine : lineList) {
+            UserImportRow row = parseImportRow(importLine.content, header);
+            if (row == null) {
+                context.addInvalid(importLine.lineNum, "格式错误");
+                continue;
+            }
+            String userAccount = StringUtils.trim(row.getUserAccount());
+            String userPassword = row.getUserPassword();
+            String planetCode = StringUtils.trim(row.getPlanetCode());
+            String errorMessage = AccountValidator.checkRegister(userAccount, userPassword, userPassword, planetCode);
+            if (errorMessage == null && AccountValidator.containsSpecialChar(userAccount)) {
+                errorMessage = "账号不能包含特殊字符";
+            }
+            if (errorMessage != null) {
+                context.addInvalid(importLine.lineNum, errorMessage);
+                continue;
+            }
+            if (!context.accountSet.add(userAccount)) {
+                context.addDuplicated(importLine.lineNum, "账号重复");
+                continue;
+            }
+            if (!context.planetCodeSet.add(planetCode)) {
+                context.accountSet.remove(userAccount);
+                context.addDuplicated(importLine.lineNum, "编号重复");
+                continue;
+            }
+            User user = new User();
+            user.setUserAccount(userAccount);
+            user.setUserPassword(encryptPassword(userPassword));
+            user.setPlanetCode(planetCode);
+            user.setUsername(StringUtils.trimToNull(row.getUsername()));
+            importLine.user = user;
+            accountLineMap.put(userAccount, importLine);
+        }
+        if (accountLineMap.isEmpty()) {
+            return;
+        }
+        // 2. 与已有用户去重：布隆过滤器判定不存在的不查库
+        List<String> maybeAccountList = accountLineMap.keySet().stream()
+                .filter(bloomFilterManager::mightContainAccount).collect(Collectors.toList());
+        for (String userAccount : listExistingValues("userAccount", maybeAccountList)) {
+            ImportLine importLine = accountLineMap.remove(userAccount);
+            if (importLine != null) {
+                context.addDuplicated(importLine.lineNum, "账号重复");
+            }
+        }
+        Map<String, ImportLine> planetCodeLineMap = new HashMap<>();
+        for (ImportLine importLine : accountLineMap.values()) {
+            planetCodeLineMap.put(importLine.user.getPlanetCode(), importLine);
+        }
+        List<String> maybePlanetCodeList = planetCodeLineMap.keySet().stream()
+                .filter(bloomFilterManager::mightContainPlanetCode).collect(Collectors.toList());
+        for (String planetCode : listExistingValues("planetCode", maybePlanetCodeList)) {
+            ImportLine importLine = planetCodeLineMap.remove(planetCode);
+            if (importLine != null) {
+                context.addDuplicated(importLine.lineNum, "编号重复");
+            }
+        }
+        if (planetCodeLineMap.isEmpty()) {
+            return;
+        }
+        // 3. 批量插入，唯一索引冲突时整批回滚后逐行插入
+        List<User> userList = planetCodeLineMap.values().stream().map(importLine -> importLine.user).collect(Collectors.toList());
+        try {
+            transactionTemplate.execute(status -> this.saveBatch(userList, IMPORT_BATCH_SIZE));
+            userList.forEach(this::afterUserImported);
+            context.imported.addAndGet(userList.size());
+        } catch (DuplicateKeyException e) {
+            for (ImportLine importLine : planetCodeLineMap.values()) {
+                User user = importLine.user;
+                user.setId(null);
+                try {
+                    this.save(user);
+                } catch (DuplicateKeyException rowException) {
+                    context.addDuplicated(importLine.lineNum, getDuplicateMessage(user, null));
+                    continue;
+                }
+                afterUserImported(user);
+                context.imported.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 唯一索引冲突后重新查询是哪个字段重复（异常信息里带有整条 SQL，不能据此判断）
+     * @param user 写入的账号、编号，为空的字段不检查
+     * @param excludeId 修改用户信息时排除自己
+     * @return
+     */
+    private String getDuplicateMessage(User user, Long excludeId) {
+        if (user.getUserAccount() != null) {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.eq("userAccount", user.getUserAccount()).ne(excludeId != null, "id", excludeId);
+            if (userMapper.selectCount(queryWrapper) > 0) {
+                return "账号重复";
+            }
+        }
+        if (user.getPlanetCode() != null) {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.eq("planetCode", user.getPlanetCode()).ne(excludeId != null, "id", excludeId);
+            if (userMapper.selectCount(queryWrapper) > 0) {
+                return "编号重复";
+            }
+        }
+        //冲突的记录已被删除或回滚
+        return "账号或编号重复，请重试";
+    }
+
+    /**
+     * 解析一行导入数据
+     * @param content
+     * @param header CSV 表头，NDJSON 时为 null
+     * @return 格式错误时返回 null
+     */
+    private UserImportRow parseImportRow(String content, String[] header) {
+        if (header == null) {
+            try {
+                return objectMapper.readValue(content, UserImportRow.class);
+            } catch (JsonProcessingException e) {
+                return null;
+            }
+        }
+        //简单 CSV：字段中不含逗号和引号
+        String[] values = content.split(",", -1);
+        if (values.length != header.length) {
+            return null;
+        }
+        UserImportRow row = new UserImportRow();
+        for (int i = 0; i < header.length; i++) {
+            String value = values[i].trim();
+            switch (header[i].trim()) {
+                case "userAccount":
+                    row.setUserAccount(value);
+                    break;
+                case "userPassword":
+                    row.setUserPassword(value);
+                    break;
+                case "planetCode":
+                    row.setPlanetCode(value);
+                    break;
+                case "username":
+                    row.setUsername(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * 查询已存在的账号或星球编号
+     * @param column userAccount 或 planetCode
+     * @param valueList
+     * @return
+     */
+    private List<String> listExistingValues(String column, Collection<String> valueList) {
+        if (valueList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select(column).in(column, valueList);
+        return this.listObjs(queryWrapper, Object::toString);
+    }
+
+    private void afterUserImported(User user) {
+        if (user.getId() != null) {
+            bloomFilterManager.addUser(user.getId());
+        }
+        bloomFilterManager.addUserCredential(user.getUserAccount(), user.getPlanetCode());
+    }
+
+    private static String encryptPassword(String userPassword) {
+        return DigestUtils.md5DigestAsHex((SALT + userPassword).getBytes());
+    }
+
+    /**
+     * 导入数据的一行
+     */
+    private static class ImportLine {
+
+        private final long lineNum;
+
+        private final String content;
+
+        /**
+         * 校验通过后待插入的用户
+         */
+        private User user;
+
+        ImportLine(long lineNum, String content) {
+            this.lineNum = lineNum;
+            this.content = content;
+        }
+    }
+
+    /**
+     * 一次导入的统计和去重状态（多个工作线程共享）
+     */
+    private static class ImportContext {
+
+        private final AtomicLong total = new AtomicLong();
+
+        private final AtomicLong imported = new AtomicLong();
+
+        private final AtomicLong duplicated = new AtomicLong();
+
+        private final AtomicLong invalid = new AtomicLong();
+
+        private final Set<String> accountSet = ConcurrentHashMap.newKeySet();
+
+        private final Set<String> planetCodeSet = ConcurrentHashMap.newKeySet();
+
+        private final List<String> errorList = new ArrayList<>();
+
+        void addInvalid(long lineNum, String reason) {
+            invalid.incrementAndGet();
+            addError(lineNum, reason);
+        }
+
+        void addDuplicated(long lineNum, String reason) {
+            duplicated.incrementAndGet();
+            addError(lineNum, reason);
+        }
+
+        synchronized void addError(long lineNum, String reason) {
+            if (errorList.size() < IMPORT_MAX_ERROR_NUM) {
+                errorList.add("第 " + lineNum + " 行：" + reason);
+            }
+        }
+
+        synchronized List<String> getErrorList() {
+            return new ArrayList<>(errorList);
+        }
+    }
+}
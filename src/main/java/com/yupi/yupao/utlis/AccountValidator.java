@@ -0,0 +1,83 @@
+package com.yupi.yupao.utlis;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.regex.Pattern;
+
+/**
+ * 账号、密码校验（注册、登录共用）
+ * 1. 特殊字符的正则只编译一次，Pattern 线程安全，每次校验只创建 Matcher
+ * 2. 全部为无状态的静态方法，按顺序执行校验步骤，第一个不通过的步骤决定结果
+ */
+public final class AccountValidator {
+
+    /**
+     * 账号中不允许的特殊字符
+     */
+    public static final String SPECIAL_CHAR_REGEX = "[`~!@#$%^&*()+=|{}':;',\\\\[\\\\].<>/?~！@#￥%……&*（）——+|{}【】‘；：”“’。，、？]";
+
+    private static final Pattern SPECIAL_CHAR_PATTERN = Pattern.compile(SPECIAL_CHAR_REGEX);
+
+    private static final int MIN_ACCOUNT_LENGTH = 4;
+
+    private static final int MIN_PASSWORD_LENGTH = 8;
+
+    private static final int MAX_PLANET_CODE_LENGTH = 5;
+
+    private AccountValidator() {
+    }
+
+    /**
+     * 注册参数的格式校验（不含特殊字符校验）
+     * @param userAccount
+     * @param userPassword
+     * @param checkPassword
+     * @param planetCode
+     * @return 不通过的原因，通过时返回 null
+     */
+    public static String checkRegister(String userAccount, String userPassword, String checkPassword, String planetCode) {
+        if (StringUtils.isAnyBlank(userAccount, userPassword, checkPassword, planetCode)) {
+            return "参数为空";
+        }
+        if (!isAccountLengthValid(userAccount)) {
+            return "用户账号过短";
+        }
+        if (!isPasswordLengthValid(userPassword) || !isPasswordLengthValid(checkPassword)) {
+            return "用户密码过短";
+        }
+        if (planetCode.length() > MAX_PLANET_CODE_LENGTH) {
+            return "星球编号过长";
+        }
+        return null;
+    }
+
+    /**
+     * 登录参数校验
+     * @param userAccount
+     * @param userPassword
+     * @return 是否通过
+     */
+    public static boolean checkLogin(String userAccount, String userPassword) {
+        return !StringUtils.isAnyBlank(userAccount, userPassword)
+                && isAccountLengthValid(userAccount)
+                && isPasswordLengthValid(userPassword)
+                && !containsSpecialChar(userAccount);
+    }
+
+    /**
+     * 账号是否包含特殊字符
+     * @param userAccount
+     * @return
+     */
+    public static boolean containsSpecialChar(String userAccount) {
+        return SPECIAL_CHAR_PATTERN.matcher(userAccount).find();
+    }
+
+    private static boolean isAccountLengthValid(String userAccount) {
+        return userAccount.length() >= MIN_ACCOUNT_LENGTH;
+    }
+
+    private static boolean isPasswordLengthValid(String userPassword) {
+        return userPassword.length() >= MIN_PASSWORD_LENGTH;
+    }
+}
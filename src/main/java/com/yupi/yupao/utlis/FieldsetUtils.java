@@ -0,0 +1,125 @@
+package com.yupi.yupao.utlis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yupi.yupao.common.ErrorCode;
+import com.yupi.yupao.exception.BusinessException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 稀疏字段集工具类（fields=id,name,hasJoinNum）
+ * 1. 请求的字段映射为数据库列，下推到 QueryWrapper.select 只查需要的列
+ * 2. 序列化时只输出请求的字段
+ */
+public class FieldsetUtils {
+
+    /**
+     * 队伍列表可选字段 -> 需要查询的列（null 表示不需要额外的列）
+     */
+    public static final Map<String, String> TEAM_FIELD_COLUMN_MAP;
+
+    /**
+     * 用户列表可选字段 -> 需要查询的列
+     */
+    public static final Map<String, String> USER_FIELD_COLUMN_MAP;
+
+    static {
+        Map<String, String> teamFieldColumnMap = new LinkedHashMap<>();
+        teamFieldColumnMap.put("id", "id");
+        teamFieldColumnMap.put("name", "name");
+        teamFieldColumnMap.put("description", "description");
+        teamFieldColumnMap.put("maxNum", "maxNum");
+        teamFieldColumnMap.put("expireTime", "expireTime");
+        teamFieldColumnMap.put("userId", "userId");
+        teamFieldColumnMap.put("status", "status");
+        teamFieldColumnMap.put("createTime", "createTime");
+        teamFieldColumnMap.put("updateTime", "updateTime");
+        teamFieldColumnMap.put("createUser", "userId");
+        teamFieldColumnMap.put("hasJoinNum", "memberCount");
+        teamFieldColumnMap.put("hasJoin", null);
+        TEAM_FIELD_COLUMN_MAP = Collections.unmodifiableMap(teamFieldColumnMap);
+
+        Map<String, String> userFieldColumnMap = new LinkedHashMap<>();
+        userFieldColumnMap.put("id", "id");
+        userFieldColumnMap.put("username", "username");
+        userFieldColumnMap.put("userAccount", "userAccount");
+        userFieldColumnMap.put("avatarUrl", "avatarUrl");
+        userFieldColumnMap.put("gender", "gender");
+        userFieldColumnMap.put("phone", "phone");
+        userFieldColumnMap.put("email", "email");
+        userFieldColumnMap.put("tags", "tags");
+        userFieldColumnMap.put("userStatus", "userStatus");
+        userFieldColumnMap.put("createTime", "createTime");
+        userFieldColumnMap.put("userRole", "userRole");
+        userFieldColumnMap.put("planetCode", "planetCode");
+        USER_FIELD_COLUMN_MAP = Collections.unmodifiableMap(userFieldColumnMap);
+    }
+
+    /**
+     * 解析 fields 参数
+     * @param fields 逗号分隔的字段名
+     * @param fieldColumnMap 可选字段
+     * @return 为空表示返回全部字段
+     */
+    public static Set<String> parseFields(String fields, Map<String, String> fieldColumnMap) {
+        if (StringUtils.isBlank(fields)) {
+            return Collections.emptySet();
+        }
+        Set<String> fieldSet = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            field = field.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            if (!fieldColumnMap.containsKey(field)) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的字段：" + field);
+            }
+            fieldSet.add(field);
+        }
+        return fieldSet;
+    }
+
+    /**
+     * 字段对应需要查询的列
+     * @param fieldSet 请求的字段
+     * @param fieldColumnMap 可选字段
+     * @param requiredColumns 必须查询的列（如 id）
+     * @return
+     */
+    public static String[] toColumns(Set<String> fieldSet, Map<String, String> fieldColumnMap, String... requiredColumns) {
+        Set<String> columnSet = new LinkedHashSet<>();
+        Collections.addAll(columnSet, requiredColumns);
+        for (String field : fieldSet) {
+            String column = fieldColumnMap.get(field);
+            if (column != null) {
+                columnSet.add(column);
+            }
+        }
+        return columnSet.toArray(new String[0]);
+    }
+
+    /**
+     * 只保留请求的字段
+     * @param objectMapper
+     * @param objectList
+     * @param fieldSet
+     * @return
+     */
+    public static List<ObjectNode> project(ObjectMapper objectMapper, List<?> objectList, Set<String> fieldSet) {
+        List<ObjectNode> nodeList = new ArrayList<>(objectList.size());
+        for (Object object : objectList) {
+            ObjectNode node = objectMapper.valueToTree(object);
+            node.retain(fieldSet);
+            nodeList.add(node);
+        }
+        return nodeList;
+    }
+}
@@ -0,0 +1,109 @@
+package com.yupi.yupao.utlis;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 本地布隆过滤器
+ * 位数组使用 AtomicLongArray，写入无锁且线程安全，读取不加锁
+ */
+public class LocalBloomFilter {
+
+    private final AtomicLongArray bits;
+
+    /**
+     * 位数组长度
+     */
+    private final long bitSize;
+
+    /**
+     * 哈希函数个数
+     */
+    private final int hashNum;
+
+    /**
+     * @param expectedInsertions 预计插入数量
+     * @param fpp                期望误判率
+     */
+    public LocalBloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(expectedInsertions, 1L);
+        long m = (long) (-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        m = Math.max(m, 64L);
+        this.bits = new AtomicLongArray((int) ((m + 63) >>> 6));
+        this.bitSize = (long) bits.length() << 6;
+        this.hashNum = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    /**
+     * 写入元素（传入元素的 64 位哈希值）
+     * @param hash
+     */
+    public void put(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashNum; i++) {
+            long index = indexOf(h1 + i * h2);
+            int wordIndex = (int) (index >>> 6);
+            long mask = 1L << index;
+            long word;
+            do {
+                word = bits.get(wordIndex);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(wordIndex, word, word | mask));
+        }
+    }
+
+    /**
+     * 元素是否可能存在，返回 false 时一定不存在
+     * @param hash
+     * @return
+     */
+    public boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashNum; i++) {
+            long index = indexOf(h1 + i * h2);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long indexOf(int combinedHash) {
+        if (combinedHash < 0) {
+            combinedHash = ~combinedHash;
+        }
+        return combinedHash % bitSize;
+    }
+
+    /**
+     * long 值的 64 位哈希（murmur3 fmix64）
+     * @param value
+     * @return
+     */
+    public static long hash(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 字符串的 64 位哈希（FNV-1a 再做一次混淆）
+     * @param value
+     * @return
+     */
+    public static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return hash(h);
+    }
+}
@@ -0,0 +1,36 @@
+package com.yupi.yupao;
+
+import com.yupi.yupao.support.EmbeddedRedis;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.annotation.Resource;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 应用上下文启动测试（test 配置：H2 + 嵌入式 Redis，不依赖外部环境）
+ * 同时校验 actuator 指标端点和 swagger 接口文档都能访问，二者曾因路径匹配方式冲突导致应用无法启动
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ApplicationContextTest {
+
+    static {
+        EmbeddedRedis.start();
+    }
+
+    @Resource
+    private MockMvc mockMvc;
+
+    @Test
+    void contextLoads() throws Exception {
+        mockMvc.perform(get("/actuator/metrics")).andExpect(status().isOk());
+        mockMvc.perform(get("/v2/api-docs")).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,129 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.model.domain.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+
+/**
+ * 无状态登录令牌测试（不启动 Spring，黑名单的 Redis 操作用 Mockito 模拟）
+ */
+public class AuthTokenManagerTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private AuthTokenManager authTokenManager;
+
+    private ZSetOperations<String, String> zSetOperations;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        zSetOperations = Mockito.mock(ZSetOperations.class);
+        Mockito.when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        authTokenManager = newManager(SECRET, 24);
+        ReflectionTestUtils.setField(authTokenManager, "stringRedisTemplate", stringRedisTemplate);
+        authTokenManager.init();
+    }
+
+    @Test
+    void issueAndVerify() {
+        AuthTokenManager.TokenPayload tokenPayload = authTokenManager.verify(authTokenManager.issue(newUser(1)));
+        Assertions.assertNotNull(tokenPayload);
+        Assertions.assertEquals(10L, tokenPayload.getUserId());
+        Assertions.assertEquals(1, tokenPayload.getUserRole());
+    }
+
+    @Test
+    void tamperedPayloadRejected() {
+        String token = authTokenManager.issue(newUser(0));
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8);
+        //改成管理员，沿用原签名
+        String forged = payload.replaceFirst("^10:0:", "10:1:");
+        Assertions.assertNotEquals(payload, forged);
+        Assertions.assertNull(authTokenManager.verify(encode(forged.getBytes(StandardCharsets.UTF_8)) + "." + parts[1]));
+    }
+
+    @Test
+    void tamperedSignatureRejected() {
+        String token = authTokenManager.issue(newUser(0));
+        //改签名的第一个字符（最后一个字符可能只有填充位不同，解码结果不变）
+        int signatureIndex = token.indexOf('.') + 1;
+        char first = token.charAt(signatureIndex);
+        String tampered = token.substring(0, signatureIndex) + (first == 'A' ? 'B' : 'A') + token.substring(signatureIndex + 1);
+        Assertions.assertNull(authTokenManager.verify(tampered));
+    }
+
+    @Test
+    void expiredTokenRejected() {
+        ReflectionTestUtils.setField(authTokenManager, "tokenTtlHours", -1L);
+        Assertions.assertNull(authTokenManager.verify(authTokenManager.issue(newUser(0))));
+    }
+
+    @Test
+    void malformedTokenRejected() {
+        Assertions.assertNull(authTokenManager.verify(""));
+        Assertions.assertNull(authTokenManager.verify("no-dot"));
+        Assertions.assertNull(authTokenManager.verify(".signature"));
+        Assertions.assertNull(authTokenManager.verify("payload."));
+        Assertions.assertNull(authTokenManager.verify("!!!.@@@"));
+        Assertions.assertNull(authTokenManager.verify("a.b.c"));
+        //签名正确但字段数不对
+        Assertions.assertNull(authTokenManager.verify(signed("10:0:" + (System.currentTimeMillis() + 60000))));
+        //签名正确但数字格式不对
+        Assertions.assertNull(authTokenManager.verify(signed("x:0:" + (System.currentTimeMillis() + 60000) + ":id")));
+    }
+
+    @Test
+    void denylistedTokenRejectedAfterRefresh() {
+        String token = authTokenManager.issue(newUser(0));
+        AuthTokenManager.TokenPayload tokenPayload = authTokenManager.verify(token);
+        Assertions.assertNotNull(tokenPayload);
+        //其他实例注销了该令牌
+        Mockito.when(zSetOperations.rangeByScore(Mockito.eq("yupao:auth:denylist"), Mockito.anyDouble(), Mockito.anyDouble()))
+                .thenReturn(Collections.singleton(tokenPayload.getTokenId()));
+        authTokenManager.refreshDenylist();
+        Assertions.assertNull(authTokenManager.verify(token));
+    }
+
+    @Test
+    void shortSecretFailsStartup() {
+        AuthTokenManager manager = newManager("too-short", 24);
+        Assertions.assertThrows(IllegalStateException.class, manager::init);
+    }
+
+    private AuthTokenManager newManager(String secret, long ttlHours) {
+        AuthTokenManager manager = new AuthTokenManager();
+        ReflectionTestUtils.setField(manager, "mode", AuthTokenManager.MODE_TOKEN);
+        ReflectionTestUtils.setField(manager, "tokenSecret", secret);
+        ReflectionTestUtils.setField(manager, "tokenTtlHours", ttlHours);
+        return manager;
+    }
+
+    private String signed(String payload) {
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        byte[] signature = ReflectionTestUtils.invokeMethod(authTokenManager, "sign", (Object) payloadBytes);
+        return encode(payloadBytes) + "." + encode(signature);
+    }
+
+    private String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private User newUser(int userRole) {
+        User user = new User();
+        user.setId(10L);
+        user.setUserRole(userRole);
+        return user;
+    }
+}
@@ -0,0 +1,131 @@
+package com.yupi.yupao.manager;
+
+import com.yupi.yupao.support.EmbeddedRedis;
+import com.yupi.yupao.utlis.LocalBloomFilter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 多实例共用 Redis 时按代重建的布隆过滤器不能出现假阴性
+ * a、b 模拟两个实例，a 负责发布
+ */
+public class GenerationalBloomFilterTest {
+
+    private static final String KEY_PREFIX = "yupao:bloom:test:id";
+
+    private static RedissonClient redissonClient;
+
+    private GenerationalBloomFilter<Long> a;
+
+    private GenerationalBloomFilter<Long> b;
+
+    @BeforeAll
+    static void startRedis() {
+        EmbeddedRedis.start();
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + EmbeddedRedis.PORT);
+        redissonClient = Redisson.create(config);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redissonClient.shutdown();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redissonClient.getKeys().deleteByPattern(KEY_PREFIX + "*");
+        a = new GenerationalBloomFilter<>(redissonClient, KEY_PREFIX, LocalBloomFilter::hash);
+        b = new GenerationalBloomFilter<>(redissonClient, KEY_PREFIX, LocalBloomFilter::hash);
+        a.finishRebuild(a.beginRebuild(true, 0), Arrays.asList(1L, 2L));
+        b.finishRebuild(b.beginRebuild(false, 0), Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    void addOnOtherInstanceDuringPublish() {
+        GenerationalBloomFilter<Long>.Rebuild rebuild = a.beginRebuild(true, 0);
+        //b 在 a 从数据库加载之后写入，a 加载的数据里没有
+        b.add(3L);
+        a.finishRebuild(rebuild, Arrays.asList(1L, 2L));
+        Assertions.assertTrue(a.mightContain(3L));
+        Assertions.assertTrue(b.mightContain(3L));
+    }
+
+    @Test
+    void addOnStaleInstanceAfterPublish() {
+        a.finishRebuild(a.beginRebuild(true, 0), Arrays.asList(1L, 2L));
+        //b 还没重建，本地记录的仍是旧的一代
+        b.add(4L);
+        Assertions.assertTrue(a.mightContain(4L));
+        b.finishRebuild(b.beginRebuild(false, 0), Collections.<Long>emptyList());
+        Assertions.assertTrue(b.mightContain(4L));
+    }
+
+    @Test
+    void strictFallsBackWhenLocalGenerationIsStale() {
+        Assertions.assertFalse(b.mightContain(6L, true));
+        //a 已发布新的一代，b 的本地副本落后，严格模式下放行
+        a.finishRebuild(a.beginRebuild(true, 0), Arrays.asList(1L, 2L));
+        Assertions.assertTrue(b.mightContain(6L, true));
+        b.finishRebuild(b.beginRebuild(false, 0), Arrays.asList(1L, 2L));
+        Assertions.assertFalse(b.mightContain(6L, true));
+    }
+
+    @Test
+    void newGenerationLostDuringPublish() {
+        GenerationalBloomFilter<Long>.Rebuild rebuild = a.beginRebuild(true, 0);
+        redissonClient.getKeys().deleteByPattern(KEY_PREFIX + ":[0-9]*");
+        a.finishRebuild(rebuild, Arrays.asList(1L, 2L, 7L));
+        Assertions.assertTrue(b.mightContain(7L));
+    }
+
+    @Test
+    void addFailureDegradesUntilPublish() {
+        addWithRedisError(b, 8L);
+        Assertions.assertTrue(a.mightContain(8L));
+        Assertions.assertTrue(a.mightContain(100L));
+        //重建期间又有写入失败，发布后仍然放行
+        GenerationalBloomFilter<Long>.Rebuild rebuild = a.beginRebuild(true, 0);
+        addWithRedisError(b, 9L);
+        a.finishRebuild(rebuild, Arrays.asList(1L, 2L, 8L));
+        Assertions.assertTrue(a.mightContain(9L));
+        Assertions.assertTrue(a.mightContain(100L));
+        //下一次发布从数据库加载到了失败的元素，恢复判定
+        a.finishRebuild(a.beginRebuild(true, 0), Arrays.asList(1L, 2L, 8L, 9L));
+        Assertions.assertTrue(a.mightContain(8L));
+        Assertions.assertTrue(a.mightContain(9L));
+        Assertions.assertFalse(a.mightContain(100L));
+    }
+
+    @Test
+    void unknownElementNotContained() {
+        Assertions.assertTrue(a.mightContain(1L));
+        Assertions.assertTrue(b.mightContain(2L));
+        Assertions.assertFalse(a.mightContain(100L));
+        Assertions.assertFalse(b.mightContain(100L));
+    }
+
+    /**
+     * 写入 Redis 失败：把重建标记临时换成错误的类型，写入后恢复
+     */
+    private void addWithRedisError(GenerationalBloomFilter<Long> filter, long element) {
+        String buildingKey = KEY_PREFIX + ":building";
+        long building = redissonClient.getAtomicLong(buildingKey).get();
+        redissonClient.getKeys().delete(buildingKey);
+        redissonClient.getMap(buildingKey).put("x", "y");
+        filter.add(element);
+        redissonClient.getKeys().delete(buildingKey);
+        if (building > 0) {
+            redissonClient.getAtomicLong(buildingKey).set(building);
+        }
+    }
+}
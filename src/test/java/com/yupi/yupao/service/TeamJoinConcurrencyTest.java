@@ -0,0 +1,187 @@
+package com.yupi.yupao.service;
+
+import com.yupi.yupao.exception.BusinessException;
+import com.yupi.yupao.model.domain.User;
+import com.yupi.yupao.model.request.TeamJoinRequest;
+import com.yupi.yupao.model.request.TeamQuitRequest;
+import com.yupi.yupao.support.EmbeddedRedis;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 并发加入 / 退出队伍压测（H2 MySQL 模式 + 嵌入式 Redis，不依赖外部环境）
+ * 1. 多线程随机加入、退出，日志输出吞吐量和 p50 / p99 延迟
+ * 2. 除业务拒绝外不能有异常，每种方式都要有加入成功的
+ * 3. 结束后校验不变量：每个用户最多加入 5 支队伍、队伍人数不超过上限、冗余的已加入人数与实际关系一致
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class TeamJoinConcurrencyTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TeamJoinConcurrencyTest.class);
+
+    private static final int USER_NUM = 200;
+
+    private static final int TEAM_NUM = 20;
+
+    private static final int THREAD_NUM = 32;
+
+    private static final int OPERATION_NUM = 4000;
+
+    /**
+     * 加入操作的占比，其余为退出
+     */
+    private static final double JOIN_RATIO = 0.75;
+
+    private static final int MAX_JOIN_TEAM_NUM = 5;
+
+    static {
+        EmbeddedRedis.start();
+    }
+
+    @Resource
+    private TeamService teamService;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @BeforeEach
+    void prepareData() {
+        stringRedisTemplate.execute(connection -> {
+            connection.flushAll();
+            return null;
+        }, true);
+        jdbcTemplate.update("delete from user_team");
+        jdbcTemplate.update("delete from team");
+        jdbcTemplate.update("delete from user");
+        List<Object[]> userArgList = new ArrayList<>();
+        for (int i = 1; i <= USER_NUM; i++) {
+            userArgList.add(new Object[]{(long) i, "user" + i, "account" + i, "password"});
+        }
+        jdbcTemplate.batchUpdate("insert into user (id, username, userAccount, userPassword) values (?, ?, ?, ?)", userArgList);
+        Random random = new Random(42);
+        List<Object[]> teamArgList = new ArrayList<>();
+        for (int i = 1; i <= TEAM_NUM; i++) {
+            //队长不在 user_team 中，所有成员都由压测加入
+            teamArgList.add(new Object[]{(long) i, "team" + i, 3 + random.nextInt(8), (long) (USER_NUM + i)});
+        }
+        jdbcTemplate.batchUpdate("insert into team (id, name, maxNum, memberCount, userId, status) values (?, ?, ?, 0, ?, 0)", teamArgList);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"lock", "lua", "cas", "queue"})
+    void concurrentJoinAndQuit(String joinMode) throws Exception {
+        ReflectionTestUtils.setField((Object) AopTestUtils.getUltimateTargetObject(teamService), "joinMode", joinMode);
+        long[] latencyNanos = new long[OPERATION_NUM];
+        AtomicInteger joinSuccess = new AtomicInteger();
+        AtomicInteger quitSuccess = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger error = new AtomicInteger();
+        AtomicReference<Exception> firstError = new AtomicReference<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_NUM);
+        List<Future<?>> futureList = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATION_NUM; i++) {
+            int index = i;
+            futureList.add(executorService.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                User user = new User();
+                user.setId((long) (1 + random.nextInt(USER_NUM)));
+                long teamId = 1 + random.nextInt(TEAM_NUM);
+                boolean join = random.nextDouble() < JOIN_RATIO;
+                long operationStart = System.nanoTime();
+                try {
+                    if (join) {
+                        TeamJoinRequest teamJoinRequest = new TeamJoinRequest();
+                        teamJoinRequest.setTeamId(teamId);
+                        if (teamService.joinTeam(teamJoinRequest, user)) {
+                            joinSuccess.incrementAndGet();
+                        }
+                    } else {
+                        TeamQuitRequest teamQuitRequest = new TeamQuitRequest();
+                        teamQuitRequest.setTeamId(teamId);
+                        if (teamService.quitTeam(teamQuitRequest, user)) {
+                            quitSuccess.incrementAndGet();
+                        }
+                    }
+                } catch (BusinessException e) {
+                    //已满、已加入、未加入等业务拒绝
+                    rejected.incrementAndGet();
+                } catch (Exception e) {
+                    error.incrementAndGet();
+                    firstError.compareAndSet(null, e);
+                } finally {
+                    latencyNanos[index] = System.nanoTime() - operationStart;
+                }
+            }));
+        }
+        for (Future<?> future : futureList) {
+            future.get();
+        }
+        long costNanos = System.nanoTime() - start;
+        executorService.shutdown();
+        executorService.awaitTermination(1, TimeUnit.MINUTES);
+
+        Arrays.sort(latencyNanos);
+        log.info(String.format("mode: %s, operations: %d, threads: %d, throughput: %.1f ops/s, p50: %.2f ms, p99: %.2f ms, "
+                        + "join: %d, quit: %d, rejected: %d, error: %d",
+                joinMode, OPERATION_NUM, THREAD_NUM, OPERATION_NUM / (costNanos / 1e9),
+                percentileMillis(latencyNanos, 0.50), percentileMillis(latencyNanos, 0.99),
+                joinSuccess.get(), quitSuccess.get(), rejected.get(), error.get()));
+
+        Assertions.assertEquals(0, error.get(), () -> joinMode + " unexpected errors, first: " + firstError.get());
+        Assertions.assertTrue(joinSuccess.get() > 0, joinMode + " no join succeeded");
+        assertInvariants(joinMode);
+    }
+
+    private void assertInvariants(String joinMode) {
+        //每个用户最多加入 5 支队伍
+        List<Map<String, Object>> overJoinList = jdbcTemplate.queryForList(
+                "select userId, count(*) as num from user_team where isDelete = 0 group by userId having count(*) > ?",
+                MAX_JOIN_TEAM_NUM);
+        Assertions.assertTrue(overJoinList.isEmpty(), joinMode + " users over join limit: " + overJoinList);
+        //队伍人数不超过上限
+        List<Map<String, Object>> overCapacityList = jdbcTemplate.queryForList(
+                "select t.id, t.maxNum, count(ut.id) as num from team t join user_team ut on ut.teamId = t.id and ut.isDelete = 0 "
+                        + "where t.isDelete = 0 group by t.id, t.maxNum having count(ut.id) > t.maxNum");
+        Assertions.assertTrue(overCapacityList.isEmpty(), joinMode + " teams over capacity: " + overCapacityList);
+        //冗余的已加入人数与实际关系一致（加入的人数上限校验依赖它）
+        List<Map<String, Object>> driftList = jdbcTemplate.queryForList(
+                "select t.id, t.memberCount, (select count(*) from user_team ut where ut.teamId = t.id and ut.isDelete = 0) as num "
+                        + "from team t where t.isDelete = 0 and t.memberCount != "
+                        + "(select count(*) from user_team ut where ut.teamId = t.id and ut.isDelete = 0)");
+        Assertions.assertTrue(driftList.isEmpty(), joinMode + " memberCount drift: " + driftList);
+    }
+
+    private double percentileMillis(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
+}
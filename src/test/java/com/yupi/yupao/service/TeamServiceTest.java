@@ -0,0 +1,271 @@
+package com.yupi.yupao.service;
+
+import com.yupi.yupao.manager.TeamJoinAdmissionManager;
+import com.yupi.yupao.manager.TeamSearchIndex;
+import com.yupi.yupao.model.dto.TeamQuery;
+import com.yupi.yupao.model.vo.TeamUserVO;
+import com.yupi.yupao.support.EmbeddedRedis;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * 队伍服务测试（H2 MySQL 模式 + 嵌入式 Redis，不依赖外部环境）
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class TeamServiceTest {
+
+    private static final int USER_NUM = 20;
+
+    private static final int TEAM_NUM = 60;
+
+    /**
+     * 每支队伍的成员数
+     */
+    private static final int MEMBER_NUM = 3;
+
+    static {
+        EmbeddedRedis.start();
+    }
+
+    @Resource
+    private TeamService teamService;
+
+    @Resource
+    private TeamSearchIndex teamSearchIndex;
+
+    @Resource
+    private TeamJoinAdmissionManager teamJoinAdmissionManager;
+
+    @Resource
+    private SqlCountInterceptor sqlCountInterceptor;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @BeforeEach
+    void prepareData() {
+        stringRedisTemplate.execute(connection -> {
+            connection.flushAll();
+            return null;
+        }, true);
+        jdbcTemplate.update("delete from user_team");
+        jdbcTemplate.update("delete from team");
+        jdbcTemplate.update("delete from user");
+        List<Object[]> userArgList = new ArrayList<>();
+        for (int i = 1; i <= USER_NUM; i++) {
+            userArgList.add(new Object[]{(long) i, "user" + i, "account" + i, "password"});
+        }
+        jdbcTemplate.batchUpdate("insert into user (id, username, userAccount, userPassword) values (?, ?, ?, ?)", userArgList);
+        List<Object[]> teamArgList = new ArrayList<>();
+        List<Object[]> userTeamArgList = new ArrayList<>();
+        for (int i = 1; i <= TEAM_NUM; i++) {
+            long leaderId = 1 + i % USER_NUM;
+            teamArgList.add(new Object[]{(long) i, "team" + i, "", MEMBER_NUM, leaderId, null, 0});
+            for (int j = 0; j < MEMBER_NUM; j++) {
+                userTeamArgList.add(new Object[]{1 + (leaderId + j - 1) % USER_NUM, (long) i});
+            }
+        }
+        insertTeams(teamArgList);
+        jdbcTemplate.batchUpdate("insert into user_team (userId, teamId, joinTime) values (?, ?, now())", userTeamArgList);
+    }
+
+    /**
+     * 查询队伍列表的 SQL 条数固定，不随队伍数量增长（无 N+1）
+     */
+    @Test
+    void listTeamsSqlCount() {
+        int smallCount = countListSql(5);
+        int largeCount = countListSql(50);
+        //队伍 + 创建人（人数取 memberCount 冗余字段）
+        Assertions.assertEquals(2, smallCount);
+        Assertions.assertEquals(smallCount, largeCount);
+    }
+
+    /**
+     * 相关度最高的候选队伍都被过滤掉时，继续往后取直到凑满
+     */
+    @Test
+    void searchFiltersCandidatesWhilePaging() {
+        List<Object[]> teamArgList = new ArrayList<>();
+        Timestamp expired = new Timestamp(System.currentTimeMillis() - 60 * 60 * 1000);
+        //名称命中（相关度高）但已过期
+        for (int i = 1; i <= 250; i++) {
+            teamArgList.add(new Object[]{(long) (1000 + i), "java学习", "", 5, 1L, expired, 0});
+        }
+        //描述命中（相关度低）且未过期
+        for (int i = 1; i <= 10; i++) {
+            teamArgList.add(new Object[]{(long) (2000 + i), "group" + i, "java学习", 5, 1L, null, 0});
+        }
+        insertTeams(teamArgList);
+        teamSearchIndex.rebuild();
+        TeamQuery teamQuery = new TeamQuery();
+        teamQuery.setSearchText("java学习");
+        List<Long> idList = teamService.listTeams(teamQuery, true).stream().map(TeamUserVO::getId).collect(Collectors.toList());
+        Assertions.assertEquals(LongStream.rangeClosed(2001, 2010).boxed().collect(Collectors.toSet()),
+                idList.stream().collect(Collectors.toSet()));
+    }
+
+    /**
+     * 查询词没有可用的 gram 时回退到模糊查询
+     */
+    @Test
+    void searchWithoutGramsFallsBackToLike() {
+        List<Object[]> teamArgList = new ArrayList<>();
+        teamArgList.add(new Object[]{3001L, "a b c", "", 5, 1L, null, 0});
+        insertTeams(teamArgList);
+        teamSearchIndex.rebuild();
+        TeamQuery teamQuery = new TeamQuery();
+        teamQuery.setSearchText("a b");
+        List<TeamUserVO> teamList = teamService.listTeams(teamQuery, true);
+        Assertions.assertEquals(1, teamList.size());
+        Assertions.assertEquals(3001L, teamList.get(0).getId());
+    }
+
+    /**
+     * 批量删除一块用户（事务内执行，结束后回滚）
+     * 101 队长 101，成员 101、102、103：删除 101、102 后转给 103，人数 1
+     * 102 队长 104，成员 104、101：队长不变，人数 1
+     * 103 队长 102，成员 102、101：没有剩余成员，解散
+     * 104 队长 105，成员 105：不受影响
+     */
+    @Test
+    @Transactional
+    void deleteUsersChunk() {
+        List<Object[]> userArgList = new ArrayList<>();
+        for (long userId = 101; userId <= 105; userId++) {
+            userArgList.add(new Object[]{userId, "user" + userId, "account" + userId, "password"});
+        }
+        jdbcTemplate.batchUpdate("insert into user (id, username, userAccount, userPassword) values (?, ?, ?, ?)", userArgList);
+        List<Object[]> teamArgList = new ArrayList<>();
+        teamArgList.add(new Object[]{101L, "team101", "", 5, 101L, null, 0});
+        teamArgList.add(new Object[]{102L, "team102", "", 5, 104L, null, 0});
+        teamArgList.add(new Object[]{103L, "team103", "", 5, 102L, null, 0});
+        teamArgList.add(new Object[]{104L, "team104", "", 5, 105L, null, 0});
+        insertTeams(teamArgList);
+        long[][] userTeamArgs = {{101, 101}, {102, 101}, {103, 101}, {104, 102}, {101, 102}, {102, 103}, {101, 103}, {105, 104}};
+        List<Object[]> userTeamArgList = new ArrayList<>();
+        for (int i = 0; i < userTeamArgs.length; i++) {
+            //按顺序加入，最早加入的先转为队长
+            userTeamArgList.add(new Object[]{userTeamArgs[i][0], userTeamArgs[i][1], new Timestamp(1000000L * (i + 1))});
+        }
+        jdbcTemplate.batchUpdate("insert into user_team (userId, teamId, joinTime) values (?, ?, ?)", userTeamArgList);
+        jdbcTemplate.update("update team set memberCount = (select count(*) from user_team ut where ut.teamId = team.id) where id > 100");
+
+        Assertions.assertEquals(2, teamService.deleteUsersChunk(Arrays.asList(101L, 102L)));
+
+        Assertions.assertEquals(Arrays.asList(103L, 104L, 105L),
+                jdbcTemplate.queryForList("select id from user where id > 100 and isDelete = 0 order by id", Long.class));
+        Assertions.assertEquals(0, (int) jdbcTemplate.queryForObject(
+                "select count(*) from user_team where userId in (101, 102) and isDelete = 0", Integer.class));
+        assertTeam(101L, 103L, 1, 0);
+        assertTeam(102L, 104L, 1, 0);
+        assertTeam(103L, null, 0, 1);
+        assertTeam(104L, 105L, 1, 0);
+    }
+
+    /**
+     * 对账修正人数后清除所有 Lua 准入的人数计数（对账的多表 update 在 H2 下不支持，直接调用清除），其他键不受影响
+     */
+    @Test
+    void evictAllAdmissionCounters() {
+        for (int i = 1; i <= 2500; i++) {
+            stringRedisTemplate.opsForValue().set("yupao:team:member:" + i, "0");
+        }
+        stringRedisTemplate.opsForValue().set("yupao:team:other", "1");
+        teamJoinAdmissionManager.evictAll();
+        Assertions.assertFalse(stringRedisTemplate.hasKey("yupao:team:member:1"));
+        Assertions.assertFalse(stringRedisTemplate.hasKey("yupao:team:member:1"));
+        Assertions.assertTrue(stringRedisTemplate.keys("yupao:team:member:*").isEmpty());
+        Assertions.assertTrue(stringRedisTemplate.hasKey("yupao:team:other"));
+    }
+
+    private void assertTeam(long teamId, Long userId, int memberCount, int isDelete) {
+        Map<String, Object> team = jdbcTemplate.queryForMap("select userId, memberCount, isDelete from team where id = ?", teamId);
+        if (userId != null) {
+            Assertions.assertEquals(userId, ((Number) team.get("userid")).longValue(), "team " + teamId + " userId");
+        }
+        Assertions.assertEquals(memberCount, ((Number) team.get("membercount")).intValue(), "team " + teamId + " memberCount");
+        Assertions.assertEquals(isDelete, ((Number) team.get("isdelete")).intValue(), "team " + teamId + " isDelete");
+    }
+
+    private int countListSql(int teamNum) {
+        TeamQuery teamQuery = new TeamQuery();
+        teamQuery.setIdList(LongStream.rangeClosed(1, teamNum).boxed().collect(Collectors.toList()));
+        sqlCountInterceptor.reset();
+        List<TeamUserVO> teamList = teamService.listTeams(teamQuery, true);
+        int sqlCount = sqlCountInterceptor.get();
+        Assertions.assertEquals(teamNum, teamList.size());
+        for (TeamUserVO teamUserVO : teamList) {
+            Assertions.assertEquals(MEMBER_NUM, teamUserVO.getHasJoinNum());
+            Assertions.assertNotNull(teamUserVO.getCreateUser());
+        }
+        return sqlCount;
+    }
+
+    /**
+     * 插入队伍：id, name, description, maxNum, userId, expireTime, status，已加入人数按 MEMBER_NUM
+     */
+    private void insertTeams(List<Object[]> teamArgList) {
+        jdbcTemplate.batchUpdate("insert into team (id, name, description, maxNum, userId, expireTime, status, memberCount) "
+                + "values (?, ?, ?, ?, ?, ?, ?, " + MEMBER_NUM + ")", teamArgList);
+    }
+
+    @TestConfiguration
+    static class SqlCountConfig {
+        @Bean
+        public SqlCountInterceptor sqlCountInterceptor() {
+            return new SqlCountInterceptor();
+        }
+    }
+
+    /**
+     * 统计执行的 SQL 条数
+     */
+    @Intercepts({@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})})
+    static class SqlCountInterceptor implements Interceptor {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            count.incrementAndGet();
+            return invocation.proceed();
+        }
+
+        void reset() {
+            count.set(0);
+        }
+
+        int get() {
+            return count.get();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.yupi.yupao.service;
+
+import com.yupi.yupao.exception.BusinessException;
+import com.yupi.yupao.manager.BloomFilterManager;
+import com.yupi.yupao.support.EmbeddedRedis;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.annotation.Resource;
+
+/**
+ * 注册查重（H2 MySQL 模式 + 嵌入式 Redis）
+ * 布隆过滤器一律判定不存在，跳过注册前的查询，由唯一索引冲突判断重复
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class UserRegisterTest {
+
+    private static final String PASSWORD = "12345678";
+
+    static {
+        EmbeddedRedis.start();
+    }
+
+    @Resource
+    private UserService userService;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private BloomFilterManager bloomFilterManager;
+
+    @BeforeEach
+    void prepareData() {
+        jdbcTemplate.update("delete from user where userAccount like 'register%'");
+        jdbcTemplate.update("insert into user (userAccount, userPassword, planetCode) values ('registered', 'password', '9001')");
+    }
+
+    @Test
+    void duplicateAccount() {
+        BusinessException e = Assertions.assertThrows(BusinessException.class,
+                () -> userService.userRegister("registered", PASSWORD, PASSWORD, "9002"));
+        Assertions.assertEquals("账号重复", e.getDescription());
+    }
+
+    @Test
+    void duplicatePlanetCode() {
+        BusinessException e = Assertions.assertThrows(BusinessException.class,
+                () -> userService.userRegister("registernew", PASSWORD, PASSWORD, "9001"));
+        Assertions.assertEquals("编号重复", e.getDescription());
+    }
+
+    @Test
+    void reuseDeletedUserAccountAndPlanetCode() {
+        jdbcTemplate.update("update user set isDelete = 1 where userAccount = 'registered'");
+        Assertions.assertTrue(userService.userRegister("registered", PASSWORD, PASSWORD, "9001") > 0);
+        //已删除的旧记录不受影响
+        Assertions.assertEquals(2, (int) jdbcTemplate.queryForObject(
+                "select count(*) from user where userAccount = 'registered'", Integer.class));
+    }
+}
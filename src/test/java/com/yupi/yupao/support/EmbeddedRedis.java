@@ -0,0 +1,40 @@
+package com.yupi.yupao.support;
+
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+/**
+ * 测试用嵌入式 Redis（端口与 application-test.yml 一致）
+ * 整个测试 JVM 只启动一次，使用 test 配置的 Spring 上下文会被多个测试类缓存共用，不能在某个测试类结束时关闭
+ * 需要在 Spring 上下文创建前调用 start，连接 Redis 的 Bean 初始化时需要
+ */
+public final class EmbeddedRedis {
+
+    public static final int PORT = 16379;
+
+    private static RedisServer redisServer;
+
+    private EmbeddedRedis() {
+    }
+
+    public static synchronized void start() {
+        if (redisServer != null) {
+            return;
+        }
+        try {
+            RedisServer server = new RedisServer(PORT);
+            server.start();
+            redisServer = server;
+        } catch (IOException e) {
+            throw new IllegalStateException("embedded redis start error", e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                redisServer.stop();
+            } catch (IOException ignored) {
+                //JVM 退出时进程随之结束
+            }
+        }, "embedded-redis-stop"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.yupi.yupao.utlis;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 注册、登录参数校验的单次耗时和内存分配（JMH）
+ * 1. compileEveryCall：改造前的写法，每次调用编译正则
+ * 2. precompiled：AccountValidator，正则只编译一次
+ * 运行：在 IDE 中执行 main 方法，或 mvn test-compile 后以测试 classpath 运行本类；
+ * 结果中的 gc.alloc.rate.norm 为每次调用分配的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountValidatorBenchmark {
+
+    @Param({"yupi_account", "yupi@account"})
+    private String userAccount;
+
+    private final String userPassword = "12345678";
+
+    private final String planetCode = "12345";
+
+    @Benchmark
+    public boolean registerCompileEveryCall() {
+        if (StringUtils.isAnyBlank(userAccount, userPassword, userPassword, planetCode)) {
+            return false;
+        }
+        if (userAccount.length() < 4 || userPassword.length() < 8 || planetCode.length() > 5) {
+            return false;
+        }
+        return !Pattern.compile(AccountValidator.SPECIAL_CHAR_REGEX).matcher(userAccount).find();
+    }
+
+    @Benchmark
+    public boolean registerPrecompiled() {
+        return AccountValidator.checkRegister(userAccount, userPassword, userPassword, planetCode) == null
+                && !AccountValidator.containsSpecialChar(userAccount);
+    }
+
+    @Benchmark
+    public boolean loginCompileEveryCall() {
+        if (StringUtils.isAnyBlank(userAccount, userPassword)) {
+            return false;
+        }
+        if (userAccount.length() < 4 || userPassword.length() < 8) {
+            return false;
+        }
+        return !Pattern.compile(AccountValidator.SPECIAL_CHAR_REGEX).matcher(userAccount).find();
+    }
+
+    @Benchmark
+    public boolean loginPrecompiled() {
+        return AccountValidator.checkLogin(userAccount, userPassword);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AccountValidatorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,59 @@
+-- 测试用表结构（H2 MySQL 模式），与 sql/create_table.sql 保持一致
+
+drop table if exists user_team;
+drop table if exists team;
+drop table if exists user;
+
+create table user
+(
+    id           bigint auto_increment primary key,
+    username     varchar(256)                       null,
+    userAccount  varchar(256)                       null,
+    avatarUrl    varchar(1024)                      null,
+    gender       tinyint                            null,
+    userPassword varchar(512)                       not null,
+    phone        varchar(128)                       null,
+    email        varchar(512)                       null,
+    tags         varchar(1024)                      null,
+    userStatus   int      default 0                 not null,
+    createTime   datetime default CURRENT_TIMESTAMP null,
+    updateTime   datetime default CURRENT_TIMESTAMP null,
+    isDelete     tinyint  default 0                 not null,
+    userRole     int      default 0                 not null,
+    planetCode   varchar(512)                       null,
+    activeFlag   tinyint as (case when isDelete = 0 then 1 else null end)
+);
+
+create unique index uk_userAccount on user (userAccount, activeFlag);
+create unique index uk_planetCode on user (planetCode, activeFlag);
+
+create table team
+(
+    id          bigint auto_increment primary key,
+    name        varchar(256)                       not null,
+    description varchar(1024)                      null,
+    maxNum      int      default 1                 not null,
+    memberCount int      default 0                 not null,
+    expireTime  datetime                           null,
+    userId      bigint                             null,
+    status      int      default 0                 not null,
+    password    varchar(512)                       null,
+    createTime  datetime default CURRENT_TIMESTAMP null,
+    updateTime  datetime default CURRENT_TIMESTAMP null,
+    isDelete    tinyint  default 0                 not null
+);
+create index idx_team_status_isDelete_expireTime on team (status, isDelete, expireTime);
+create index idx_team_userId on team (userId);
+
+create table user_team
+(
+    id         bigint auto_increment primary key,
+    userId     bigint                             null,
+    teamId     bigint                             null,
+    joinTime   datetime                           null,
+    createTime datetime default CURRENT_TIMESTAMP null,
+    updateTime datetime default CURRENT_TIMESTAMP null,
+    isDelete   tinyint  default 0                 not null
+);
+create index idx_user_team_teamId on user_team (teamId);
+create unique index uk_user_team_userId_teamId on user_team (userId, teamId);